@@ -0,0 +1,465 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.ow2.proactive.connector.maas.cache.TagRegistry;
+import org.ow2.proactive.connector.maas.data.CommissioningScript;
+import org.ow2.proactive.connector.maas.data.MaasVersion;
+import org.ow2.proactive.connector.maas.data.Machine;
+import org.ow2.proactive.connector.maas.data.Tag;
+import org.ow2.proactive.connector.maas.oauth.ConnectionPoolConfig;
+import org.ow2.proactive.connector.maas.oauth.OauthClientConfig;
+import org.ow2.proactive.connector.maas.rest.AsyncRestClient;
+import org.ow2.proactive.connector.maas.rest.RestClientErrorHandler;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.remoting.RemoteConnectFailureException;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.AsyncRestTemplate;
+
+
+/**
+ * Non-blocking counterpart of {@link MaasClient}.
+ * <p>
+ * Every operation returns immediately with a {@link CompletableFuture} completed by the I/O threads of the
+ * underlying transport, so thousands of in-flight MAAS calls share the fixed set of threads defined by
+ * {@link ConnectionPoolConfig#getIoThreads()}. As with {@link MaasClient}, failed requests complete with null
+ * (or false) instead of an exception.
+ * <p>
+ * Creating a client does not contact MAAS: use {@link #connect(String, String, boolean, ConnectionPoolConfig)}
+ * to check the API key without blocking. The transport threads and connections are released by {@link #close()}.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class AsyncMaasClient implements Closeable {
+
+    private final OauthClientConfig oauthClientConfig = new OauthClientConfig();
+
+    private final AsyncRestClient restClient;
+
+    private final TagRegistry tagRegistry = new TagRegistry();
+
+    public AsyncMaasClient(String apiUrl, String token, boolean ignoreHttpsCert) {
+        this(apiUrl, token, ignoreHttpsCert, null);
+    }
+
+    public AsyncMaasClient(String apiUrl, String token, boolean ignoreHttpsCert, ConnectionPoolConfig poolConfig) {
+
+        // Check API key format
+        if (!MaasClient.checkCredentials(token)) {
+            throw new RemoteConnectFailureException("Unable to parse API key", new Throwable("Wrong API key format"));
+        }
+
+        // Parse API token
+        String[] tokenParts = token.split(":");
+        String consumerKey = tokenParts[0];
+        String accessKey = tokenParts[1];
+        String accessSecret = tokenParts[2];
+        AsyncRestTemplate restTemplate = oauthClientConfig.asyncRestTemplate(consumerKey,
+                                                                             "",
+                                                                             accessKey,
+                                                                             accessSecret,
+                                                                             ignoreHttpsCert,
+                                                                             poolConfig);
+        restClient = new AsyncRestClient(restTemplate, apiUrl);
+    }
+
+    /**
+     * Create a client and check, without blocking, that MAAS accepts its API key.
+     *
+     * @return A future completed with the connected client, or exceptionally with a
+     *         {@link RemoteConnectFailureException} (the client is then closed)
+     */
+    public static CompletableFuture<AsyncMaasClient> connect(String apiUrl, String token, boolean ignoreHttpsCert,
+            ConnectionPoolConfig poolConfig) {
+        AsyncMaasClient client;
+        try {
+            client = new AsyncMaasClient(apiUrl, token, ignoreHttpsCert, poolConfig);
+        } catch (RemoteConnectFailureException e) {
+            CompletableFuture<AsyncMaasClient> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            return failure;
+        }
+
+        // Try to retrieve a config option
+        return client.getMaasConfig("maas_name").thenApply(maasName -> {
+            if (maasName == null) {
+                client.close();
+                throw new RemoteConnectFailureException("Remote authentication failure",
+                                                        new Throwable("Wrong API key content"));
+            }
+            return client;
+        });
+    }
+
+    /**
+     * Release the I/O threads, connections and idle connection evictor of this client.
+     * Pending requests are aborted and the client cannot be used anymore afterwards.
+     */
+    @Override
+    public void close() {
+        oauthClientConfig.close();
+    }
+
+    public CompletableFuture<MaasVersion> getMaasVersion() {
+        return restClient.getRequest(MaasVersion.class, "/version/").thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<String> getMaasConfig(String configName) {
+        return restClient.getRequest(String.class, "/maas/?op=get_config&name=" + configName)
+                         .thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<List<Machine>> getMachines() {
+        return restClient.getRequest(Machine[].class, "/machines/").thenApply(this::listOrNull);
+    }
+
+    public CompletableFuture<List<Machine>> getMachinesByTagName(String tagName) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("name", tagName);
+        return restClient.getRequestWithArgs(Machine[].class, "/tags/{name}/?op=machines", args)
+                         .thenApply(this::listOrNull);
+    }
+
+    public CompletableFuture<List<Machine>> getMachinesByTag(Tag tag) {
+        return getMachinesByTagName(tag.getName());
+    }
+
+    public CompletableFuture<List<Machine>> getAllocatedMachines() {
+        return restClient.getRequest(Machine[].class, "/machines/?op=list_allocated").thenApply(this::listOrNull);
+    }
+
+    public CompletableFuture<Machine> getMachineById(String systemId) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("system_id", systemId);
+        return restClient.getRequestWithArgs(Machine.class, "/machines/{system_id}/", args)
+                         .thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<Machine> getMachineByName(String hostName) {
+        return restClient.getRequest(Machine[].class, "/machines/?hostname=" + hostName).thenApply(response -> {
+            Machine[] machines = bodyOrNull(response);
+            return machines != null && machines.length > 0 ? machines[0] : null;
+        });
+    }
+
+    public CompletableFuture<Machine> getMachineByMacAddress(String macAddress) {
+        return restClient.getRequest(Machine.class, "/machines/?mac_address=" + macAddress)
+                         .thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<Machine> createMachine(Machine.Builder machineBuilder) {
+        return restClient.postRequest(Machine.class, "/machines/", machineBuilder.buildAsArgs())
+                         .thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<List<String>> releaseMachines(String... systemIds) {
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        parts.add("machines", Arrays.asList(systemIds));
+        return restClient.postRequest(String[].class, "/machines/?op=release", parts).thenApply(this::listOrNull);
+    }
+
+    public CompletableFuture<Boolean> releaseMachineById(String systemId) {
+        return releaseMachineById(systemId, null, false, false, false);
+    }
+
+    public CompletableFuture<Boolean> releaseMachineById(String systemId, String comment) {
+        return releaseMachineById(systemId, comment, false, false, false);
+    }
+
+    public CompletableFuture<Boolean> releaseMachineById(String systemId, String comment, boolean eraseDisk,
+            boolean secureErase, boolean quickErase) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("system_id", systemId);
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        if (comment != null && !comment.isEmpty()) {
+            parts.add("comment", comment);
+        }
+        parts.add("erase", eraseDisk);
+        parts.add("secure_erase", secureErase);
+        parts.add("quick_erase", quickErase);
+        return restClient.postRequestWithArgs(Machine.class, "/machines/{system_id}/?op=release", parts, args)
+                         .thenApply(this::isSuccessful);
+    }
+
+    public CompletableFuture<Boolean> deleteMachine(String systemId) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("system_id", systemId);
+        return restClient.deleteRequestWithArgs(String.class, "/machines/{system_id}/", args)
+                         .thenApply(this::isSuccessful);
+    }
+
+    public CompletableFuture<List<String>> getCommissioningScripts() {
+        return restClient.getRequest(String[].class, "/commissioning-scripts/").thenApply(this::listOrNull);
+    }
+
+    public CompletableFuture<ByteArrayResource> getCommissioningScriptByName(String name) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("name", name);
+        return restClient.getRequestWithArgs(ByteArrayResource.class, "/commissioning-scripts/{name}", args)
+                         .thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<CommissioningScript> postCommissioningScript(String file) throws IOException {
+        Path path = Paths.get(file);
+        byte[] fileData = Files.readAllBytes(path);
+        String fileName = path.getFileName().toString();
+
+        return postCommissioningScript(fileData, fileName);
+    }
+
+    public CompletableFuture<CommissioningScript> postCommissioningScript(byte[] data, String name) {
+        HttpHeaders nameHeaders = new HttpHeaders();
+        nameHeaders.setContentType(MediaType.TEXT_PLAIN);
+        HttpEntity<String> namePart = new HttpEntity<>(name, nameHeaders);
+
+        HttpHeaders dataHeaders = new HttpHeaders();
+        dataHeaders.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        HttpEntity<ByteArrayResource> filePart = new HttpEntity<>(new ByteArrayResource(data) {
+            @Override
+            public String getFilename() {
+                return name;
+            }
+        }, dataHeaders);
+
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        parts.add("name", namePart);
+        parts.add("content", filePart);
+        return restClient.postRequest(CommissioningScript.class, "/commissioning-scripts/", parts)
+                         .thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<Machine> commissionMachine(String systemId) {
+        return commissionMachine(systemId, true, false, false);
+    }
+
+    public CompletableFuture<Machine> commissionMachine(String systemId, boolean enableSSH, boolean skipNetworking,
+            boolean skipStorage) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("system_id", systemId);
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        parts.add("enable_ssh", enableSSH);
+        parts.add("skip_networking", skipNetworking);
+        parts.add("skip_storage", skipStorage);
+        return restClient.postRequestWithArgs(Machine.class, "/machines/{system_id}/?op=commission", parts, args)
+                         .thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<Machine> _commissionMachineBase64(String systemId, boolean enableSSH,
+            boolean skipNetworking, boolean skipStorage) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("system_id", systemId);
+
+        // Mimics the CLI behavior by using base64 encoding (waiting for an API upgrade)
+        HttpHeaders partHeaders = new HttpHeaders();
+        partHeaders.setContentType(MediaType.TEXT_PLAIN);
+        partHeaders.set("Content-Transfer-Encoding", "base64");
+        partHeaders.set("MIME-Version", "1.0");
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        parts.add("enable_ssh", new HttpEntity<>(MaasClient.encodeToBase64(enableSSH), partHeaders));
+        parts.add("skip_networking", new HttpEntity<>(MaasClient.encodeToBase64(skipNetworking), partHeaders));
+        parts.add("skip_storage", new HttpEntity<>(MaasClient.encodeToBase64(skipStorage), partHeaders));
+
+        return restClient.postRequestWithArgs(Machine.class, "/machines/{system_id}/?op=commission", parts, args)
+                         .thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<Machine> allocateMachineById(String systemId) {
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        parts.add("system_id", systemId);
+        return restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<Machine> allocateMachineByHostname(String hostname) {
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        parts.add("name", hostname);
+        return restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<Machine> allocateMachineByResources(int cpu_count, int mem, String arch) {
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        parts.add("cpu_count", cpu_count);
+        parts.add("mem", mem);
+        parts.add("arch", arch);
+        return restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<Machine> allocateMachineByResources(int cpu_count, int mem) {
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        parts.add("cpu_count", cpu_count);
+        parts.add("mem", mem);
+        return restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<Machine> deployMachine(String systemId, String userData) {
+        return deployMachine(systemId, userData, null, null, null);
+    }
+
+    public CompletableFuture<Machine> deployMachine(String systemId) {
+        return deployMachine(systemId, null, null, null, null);
+    }
+
+    public CompletableFuture<Machine> deployMachine(String systemId, String userData, String distroSeries,
+            String hweKernel, String comment) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("system_id", systemId);
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        if (userData != null && !userData.isEmpty()) {
+            parts.add("user_data", MaasClient.encodeToBase64(userData));
+        }
+        if (distroSeries != null && !distroSeries.isEmpty()) {
+            parts.add("distro_series", distroSeries);
+        }
+        if (hweKernel != null && !hweKernel.isEmpty()) {
+            parts.add("hwe_kernel", hweKernel);
+        }
+        if (comment != null && !comment.isEmpty()) {
+            parts.add("comment", comment);
+        }
+        return restClient.postRequestWithArgs(Machine.class, "/machines/{system_id}/?op=deploy", parts, args)
+                         .thenApply(this::bodyOrNull);
+    }
+
+    public CompletableFuture<Boolean> powerOffMachine(String systemId) {
+        return powerOffMachine(systemId, "hard");
+    }
+
+    public CompletableFuture<Boolean> powerOffMachine(String systemId, String stopMode) {
+        return powerOffMachine(systemId, stopMode, null);
+    }
+
+    public CompletableFuture<Boolean> powerOffMachine(String systemId, String stopMode, String comment) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("system_id", systemId);
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        if (stopMode != null && !stopMode.isEmpty()) {
+            parts.add("stop_mode", stopMode);
+        }
+        if (comment != null && !comment.isEmpty()) {
+            parts.add("comment", comment);
+        }
+        return restClient.postRequestWithArgs(Machine.class, "/machines/{system_id}/?op=power_off", parts, args)
+                         .thenApply(this::isSuccessful);
+    }
+
+    public CompletableFuture<Boolean> powerOnMachine(String systemId) {
+        return powerOnMachine(systemId, null);
+    }
+
+    public CompletableFuture<Boolean> powerOnMachine(String systemId, String comment) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("system_id", systemId);
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        if (comment != null && !comment.isEmpty()) {
+            parts.add("comment", comment);
+        }
+        return restClient.postRequestWithArgs(Machine.class, "/machines/{system_id}/?op=power_on", parts, args)
+                         .thenApply(this::isSuccessful);
+    }
+
+    public CompletableFuture<List<Tag>> getTags() {
+        return restClient.getRequest(Tag[].class, "/tags/").thenApply(this::listOrNull);
+    }
+
+    public CompletableFuture<Boolean> createTagIfNotExists(String name, String description) {
+        return tagRegistry.existsAsync(name, this::getTags).thenCompose(exists -> {
+            if (exists) {
+                return CompletableFuture.completedFuture(false);
+            }
+            MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+            parts.add("name", name);
+            if (description != null && !description.isEmpty()) {
+                parts.add("comment", description);
+            }
+            // Set kernel options as None to avoid overriding options by an empty string
+            parts.add("kernel_opts", null);
+            return restClient.postRequest(String.class, "/tags/", parts).thenApply(response -> {
+                if (isSuccessful(response)) {
+                    tagRegistry.register(name);
+                    return true;
+                }
+                // Lost a creation race against another client
+                if (response.getBody() != null && response.getBody().contains(MaasClient.TAG_ALREADY_EXISTS_ERROR)) {
+                    tagRegistry.register(name);
+                }
+                return false;
+            });
+        });
+    }
+
+    /**
+     * @return the registry of existing tag names used by {@link #createTagIfNotExists(String, String)}
+     */
+    public TagRegistry getTagRegistry() {
+        return tagRegistry;
+    }
+
+    public CompletableFuture<Boolean> updateTagNodesMapping(String name) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("name", name);
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        return restClient.postRequestWithArgs(String.class, "/tags/{name}/op=rebuild", parts, args)
+                         .thenApply(this::isSuccessful);
+    }
+
+    public CompletableFuture<Boolean> addTagToMachines(String tagName, String systemId, String... systemIds) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("name", tagName);
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        parts.add("add", systemId);
+        Arrays.stream(systemIds).forEach(additionalSystemId -> parts.add("add", additionalSystemId));
+        return restClient.postRequestWithArgs(String.class, "/tags/{name}/?op=update_nodes", parts, args)
+                         .thenApply(this::isSuccessful);
+    }
+
+    private boolean isSuccessful(ResponseEntity<?> response) {
+        return !RestClientErrorHandler.hasError(response.getStatusCode());
+    }
+
+    private <T> T bodyOrNull(ResponseEntity<T> response) {
+        return isSuccessful(response) ? response.getBody() : null;
+    }
+
+    private <T> List<T> listOrNull(ResponseEntity<T[]> response) {
+        T[] body = bodyOrNull(response);
+        return body != null ? Arrays.asList(body) : null;
+    }
+}
@@ -25,20 +25,52 @@
  */
 package org.ow2.proactive.connector.maas;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.ow2.proactive.connector.maas.batch.BulkExecutor;
+import org.ow2.proactive.connector.maas.batch.BulkOutcome;
+import org.ow2.proactive.connector.maas.batch.TagSyncResult;
+import org.ow2.proactive.connector.maas.cache.MaasCacheConfig;
+import org.ow2.proactive.connector.maas.cache.MaasClientCache;
+import org.ow2.proactive.connector.maas.cache.MachineInventory;
+import org.ow2.proactive.connector.maas.cache.TagRegistry;
+import org.ow2.proactive.connector.maas.data.AllocationConstraints;
 import org.ow2.proactive.connector.maas.data.CommissioningScript;
+import org.ow2.proactive.connector.maas.data.Interface;
 import org.ow2.proactive.connector.maas.data.MaasVersion;
 import org.ow2.proactive.connector.maas.data.Machine;
+import org.ow2.proactive.connector.maas.data.MachineQuery;
+import org.ow2.proactive.connector.maas.data.MachineStatus;
+import org.ow2.proactive.connector.maas.data.MachineSummary;
 import org.ow2.proactive.connector.maas.data.Tag;
+import org.ow2.proactive.connector.maas.oauth.ConnectionPoolConfig;
 import org.ow2.proactive.connector.maas.oauth.OauthClientConfig;
+import org.ow2.proactive.connector.maas.rest.RequestCoalescer;
+import org.ow2.proactive.connector.maas.rest.ResponseCache;
 import org.ow2.proactive.connector.maas.rest.RestClient;
 import org.ow2.proactive.connector.maas.rest.RestClientErrorHandler;
 import org.springframework.core.io.ByteArrayResource;
@@ -53,14 +85,64 @@ import org.springframework.web.client.RestTemplate;
 
 
 /**
+ * Synchronous MAAS API client.
+ * <p>
+ * Instances are safe to share between threads: requests do not mutate any client state, so a single
+ * client (and a single connection check) can serve a whole application. Clients created with a
+ * {@link ConnectionPoolConfig} own a pooled HTTP transport that is released by {@link #close()}.
+ *
  * @author Vincent Kherbache
  * @since 09/01/17
  */
-public class MaasClient {
+public class MaasClient implements Closeable {
+
+    /**
+     * Maximum number of machines added/removed by a single update_nodes request
+     */
+    public static final int MAX_TAG_UPDATE_NODES = 1000;
+
+    /**
+     * Number of machines released by a single bulk release request
+     */
+    public static final int BULK_RELEASE_CHUNK_SIZE = 100;
+
+    /**
+     * Default maximum number of concurrent requests of bulk operations
+     */
+    public static final int DEFAULT_BULK_PARALLELISM = 8;
+
+    /**
+     * Maximum length of the query of a multi-get request, well below the usual URL length limits of HTTP servers
+     */
+    public static final int MAX_FILTER_QUERY_LENGTH = 4000;
+
+    /**
+     * Default deadline (in seconds) of each request of bulk power operations, counted from the start of the operation
+     */
+    public static final long DEFAULT_BULK_REQUEST_TIMEOUT = 60;
+
+    static final String TAG_ALREADY_EXISTS_ERROR = "already exists";
+
+    private final OauthClientConfig oauthClientConfig = new OauthClientConfig();
+
+    private final RestClient restClient;
+
+    private final TagRegistry tagRegistry = new TagRegistry();
 
-    private RestClient restClient;
+    private volatile MaasClientCache cache;
+
+    private volatile MachineInventory machineInventory;
 
     public MaasClient(String apiUrl, String token, boolean ignoreHttpsCert) {
+        this(apiUrl, token, ignoreHttpsCert, null);
+    }
+
+    /**
+     * Create a MAAS client whose requests go through a pooled keep-alive HTTP transport.
+     *
+     * @param poolConfig    The connection pool settings, or null to open a new connection per request
+     */
+    public MaasClient(String apiUrl, String token, boolean ignoreHttpsCert, ConnectionPoolConfig poolConfig) {
 
         // Check API key format
         if (!checkCredentials(token)) {
@@ -72,25 +154,134 @@ public class MaasClient {
         String consumerKey = tokenParts[0];
         String accessKey = tokenParts[1];
         String accessSecret = tokenParts[2];
-        RestTemplate restTemplate = new OauthClientConfig().restTemplate(consumerKey,
-                                                                         "",
-                                                                         accessKey,
-                                                                         accessSecret,
-                                                                         ignoreHttpsCert);
+        RestTemplate restTemplate = oauthClientConfig.restTemplate(consumerKey,
+                                                                   "",
+                                                                   accessKey,
+                                                                   accessSecret,
+                                                                   ignoreHttpsCert,
+                                                                   poolConfig);
         restClient = new RestClient(restTemplate, apiUrl);
 
         // Try to retrieve a config option
         if (!tryToConnect()) {
+            close();
             throw new RemoteConnectFailureException("Remote authentication failure",
                                                     new Throwable("Wrong API key content"));
         }
     }
 
+    /**
+     * Release the pooled HTTP transport (connections and eviction thread) of this client, if any.
+     * The client cannot be used anymore afterwards.
+     */
+    @Override
+    public void close() {
+        disableMachineInventory();
+        oauthClientConfig.close();
+    }
+
+    /**
+     * Enable request coalescing: concurrent identical GET requests (e.g. many deployment tasks calling
+     * {@link #getMachineById(String)} for the same machine) share one HTTP request.
+     * <p>
+     * A caller may then join a request sent before its own last modification of the resource and get the
+     * state preceding it. Coalesced callers also share the same decoded objects, which must not be modified.
+     */
+    public void enableRequestCoalescing() {
+        restClient.getRequestCoalescer().setEnabled(true);
+    }
+
+    public void disableRequestCoalescing() {
+        restClient.getRequestCoalescer().setEnabled(false);
+    }
+
+    /**
+     * @return the request coalescer, exposing how much duplicate traffic is removed
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return restClient.getRequestCoalescer();
+    }
+
+    /**
+     * Enable the conditional GET cache: unchanged responses (304 Not Modified, or identical payload when
+     * MAAS provides no validator) reuse the previously decoded objects instead of being decoded again.
+     * Cached objects are shared between callers and must therefore not be modified.
+     *
+     * @param maxEntries    The maximum number of responses to keep, least recently used are evicted first
+     */
+    public void enableResponseCache(int maxEntries) {
+        restClient.enableResponseCache(maxEntries);
+    }
+
+    /**
+     * @return the conditional GET cache (and its hit/miss counters), or null if disabled
+     */
+    public ResponseCache getResponseCache() {
+        return restClient.getResponseCache();
+    }
+
+    /**
+     * Enable the client-side cache of machine, tag and configuration lookups.
+     * Cached entries expire after their resource TTL and are invalidated when this client mutates the
+     * corresponding resource (deployment, release, tagging...). Changes made by other clients are only
+     * seen once the TTL has expired.
+     */
+    public void enableCache(MaasCacheConfig cacheConfig) {
+        cache = new MaasClientCache(cacheConfig);
+    }
+
+    public void disableCache() {
+        cache = null;
+    }
+
+    /**
+     * @return the client-side cache (and its hit ratio metrics), or null if disabled
+     */
+    public MaasClientCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Enable the local machine inventory, refreshed in background at the given interval. The lookups taking a
+     * staleness bound (by host name, MAC address, tag or status) are then served from it instead of sending a
+     * filtered query. Changes made by this client are only seen once the inventory has been refreshed.
+     */
+    public void enableMachineInventory(long refreshInterval, TimeUnit unit) {
+        MachineInventory previousInventory = machineInventory;
+        machineInventory = new MachineInventory(this, refreshInterval, unit);
+        if (previousInventory != null) {
+            previousInventory.shutdown();
+        }
+    }
+
+    public void disableMachineInventory() {
+        MachineInventory previousInventory = machineInventory;
+        machineInventory = null;
+        if (previousInventory != null) {
+            previousInventory.shutdown();
+        }
+    }
+
+    /**
+     * @return the local machine inventory, or null if disabled
+     */
+    public MachineInventory getMachineInventory() {
+        return machineInventory;
+    }
+
     public MaasVersion getMaasVersion() {
         return restClient.getRequest(MaasVersion.class, "/version/").getBody();
     }
 
     public String getMaasConfig(String configName) {
+        MaasClientCache cache = this.cache;
+        if (cache != null) {
+            return cache.getConfig().get(configName, this::fetchMaasConfig);
+        }
+        return fetchMaasConfig(configName);
+    }
+
+    private String fetchMaasConfig(String configName) {
         return restClient.getRequest(String.class, "/maas/?op=get_config&name=" + configName).getBody();
     }
 
@@ -102,6 +293,49 @@ public class MaasClient {
         return Arrays.asList(response.getBody());
     }
 
+    /**
+     * Retrieve the machines matching the query, filtered by MAAS so that only them are transferred and decoded.
+     *
+     * @param query The constraints of the machines to retrieve
+     * @return      The matching machines, or null on error
+     */
+    public List<Machine> getMachines(MachineQuery query) {
+        return getByQuery(Machine[].class, query.getParameters());
+    }
+
+    /**
+     * Same as {@link #getMachines(MachineQuery)}, decoding only the summary of each machine.
+     */
+    public List<MachineSummary> getMachineSummaries(MachineQuery query) {
+        return getByQuery(MachineSummary[].class, query.getParameters());
+    }
+
+    /**
+     * Retrieve all machines as a stream decoded incrementally from the HTTP response,
+     * so that only one machine is held in memory at a time.
+     * The stream holds the HTTP connection and must be closed once consumed:
+     * <pre>
+     * try (Stream&lt;Machine&gt; machines = maasClient.streamMachines()) {
+     *     machines.filter(...).forEach(...);
+     * }
+     * </pre>
+     *
+     * @return  The stream of machines, or null on error
+     */
+    public Stream<Machine> streamMachines() {
+        return restClient.streamRequest(Machine.class, "/machines/");
+    }
+
+    /**
+     * Apply the provided action to every machine, decoding machines one at a time.
+     *
+     * @param action    The action to apply to each machine
+     * @return          True if all machines were retrieved, false on error
+     */
+    public boolean forEachMachine(Consumer<Machine> action) {
+        return forEach(streamMachines(), action);
+    }
+
     public List<Machine> getMachinesByTagName(String tagName) {
         HashMap<String, String> args = new HashMap<>();
         args.put("name", tagName);
@@ -115,6 +349,32 @@ public class MaasClient {
         return Arrays.asList(response.getBody());
     }
 
+    /**
+     * Same as {@link #getMachinesByTagName(String)}, served from the machine inventory if enabled.
+     *
+     * @param maxStaleness  How old the inventory may be, refreshed before answering if older
+     */
+    public List<Machine> getMachinesByTagName(String tagName, long maxStaleness, TimeUnit unit) {
+        MachineInventory inventory = this.machineInventory;
+        if (inventory != null) {
+            return inventory.getByTagName(tagName, maxStaleness, unit);
+        }
+        return getMachinesByTagName(tagName);
+    }
+
+    /**
+     * Retrieve the machines having the provided status, served from the machine inventory if enabled.
+     *
+     * @param maxStaleness  How old the inventory may be, refreshed before answering if older
+     */
+    public List<Machine> getMachinesByStatus(MachineStatus status, long maxStaleness, TimeUnit unit) {
+        MachineInventory inventory = this.machineInventory;
+        if (inventory != null) {
+            return inventory.getByStatus(status.getCode(), maxStaleness, unit);
+        }
+        return getMachines(new MachineQuery.Builder().status(status).build());
+    }
+
     /**
      * Retrieve the list of machines tagged with the provided tag.
      * Note: The tag name must be unique, so there is no need to check the description field of the tag.
@@ -134,13 +394,157 @@ public class MaasClient {
         return Arrays.asList(response.getBody());
     }
 
+    /**
+     * Same as {@link #streamMachines()}, restricted to the machines allocated to the current user.
+     */
+    public Stream<Machine> streamAllocatedMachines() {
+        return restClient.streamRequest(Machine.class, "/machines/?op=list_allocated");
+    }
+
+    /**
+     * Same as {@link #forEachMachine(Consumer)}, restricted to the machines allocated to the current user.
+     */
+    public boolean forEachAllocatedMachine(Consumer<Machine> action) {
+        return forEach(streamAllocatedMachines(), action);
+    }
+
+    /**
+     * Retrieve several machines by system ID, with as few requests as the URL length allows.
+     *
+     * @param systemIds The system IDs of the machines to retrieve
+     * @return          The machines found by system ID (unknown IDs are silently ignored), or null on error
+     */
+    public Map<String, Machine> getMachinesByIds(Collection<String> systemIds) {
+        List<Machine> machines = getByFilter(Machine[].class, "id", systemIds);
+        if (machines == null) {
+            return null;
+        }
+        Map<String, Machine> machinesById = new LinkedHashMap<>();
+        machines.forEach(machine -> machinesById.put(machine.getSystemId(), machine));
+        return machinesById;
+    }
+
+    /**
+     * Retrieve several machines by hostname, with as few requests as the URL length allows.
+     *
+     * @param hostnames The hostnames of the machines to retrieve
+     * @return          The machines found by hostname (unknown hostnames are silently ignored), or null on error
+     */
+    public Map<String, Machine> getMachinesByHostnames(Collection<String> hostnames) {
+        List<Machine> machines = getByFilter(Machine[].class, "hostname", hostnames);
+        if (machines == null) {
+            return null;
+        }
+        Map<String, Machine> machinesByHostname = new LinkedHashMap<>();
+        machines.stream()
+                .filter(machine -> hostnames.contains(machine.getHostname()))
+                .forEach(machine -> machinesByHostname.put(machine.getHostname(), machine));
+        return machinesByHostname;
+    }
+
+    /**
+     * Retrieve several machines by the MAC address of one of their interfaces, with as few requests as the URL
+     * length allows.
+     *
+     * @param macAddresses  The MAC addresses of the machines to retrieve
+     * @return              The machines found by MAC address, keyed by the provided addresses (unknown addresses
+     *                      are silently ignored), or null on error
+     */
+    public Map<String, Machine> getMachinesByMacs(Collection<String> macAddresses) {
+        List<Machine> machines = getByFilter(Machine[].class, "mac_address", macAddresses);
+        if (machines == null) {
+            return null;
+        }
+        // MAC addresses are case insensitive
+        Map<String, Machine> machinesByMac = new HashMap<>();
+        for (Machine machine : machines) {
+            if (machine.getInterfaceSet() != null) {
+                for (Interface networkInterface : machine.getInterfaceSet()) {
+                    if (networkInterface.getMacAddress() != null) {
+                        machinesByMac.put(networkInterface.getMacAddress().toLowerCase(Locale.ROOT), machine);
+                    }
+                }
+            }
+        }
+        Map<String, Machine> machinesByRequestedMac = new LinkedHashMap<>();
+        for (String macAddress : macAddresses) {
+            Machine machine = machinesByMac.get(macAddress.toLowerCase(Locale.ROOT));
+            if (machine != null) {
+                machinesByRequestedMac.put(macAddress, machine);
+            }
+        }
+        return machinesByRequestedMac;
+    }
+
+    /**
+     * Retrieve the summary of all machines.
+     * Only a few scalar fields are decoded, which makes it much cheaper than {@link #getMachines()}.
+     *
+     * @return  The summaries of all machines, or null on error
+     */
+    public List<MachineSummary> getMachineSummaries() {
+        ResponseEntity<MachineSummary[]> response = restClient.getRequest(MachineSummary[].class, "/machines/");
+        if (RestClientErrorHandler.hasError(response.getStatusCode())) {
+            return null;
+        }
+        return Arrays.asList(response.getBody());
+    }
+
+    /**
+     * Same as {@link #getMachinesByIds(Collection)}, decoding only the summary of each machine.
+     */
+    public List<MachineSummary> getMachineSummariesByIds(Collection<String> systemIds) {
+        return getByFilter(MachineSummary[].class, "id", systemIds);
+    }
+
+    public MachineSummary getMachineSummaryById(String systemId) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("system_id", systemId);
+        ResponseEntity<MachineSummary> response = restClient.getRequestWithArgs(MachineSummary.class,
+                                                                                "/machines/{system_id}/",
+                                                                                args);
+        if (RestClientErrorHandler.hasError(response.getStatusCode())) {
+            return null;
+        }
+        return response.getBody();
+    }
+
     public Machine getMachineById(String systemId) {
+        MaasClientCache cache = this.cache;
+        if (cache != null) {
+            return cache.getMachinesById().get(systemId, this::fetchMachineById);
+        }
+        return fetchMachineById(systemId);
+    }
+
+    private Machine fetchMachineById(String systemId) {
         HashMap<String, String> args = new HashMap<>();
         args.put("system_id", systemId);
         return restClient.getRequestWithArgs(Machine.class, "/machines/{system_id}/", args).getBody();
     }
 
     public Machine getMachineByName(String hostName) {
+        MaasClientCache cache = this.cache;
+        if (cache != null) {
+            return cache.getMachineByName(hostName, this::fetchMachineByName);
+        }
+        return fetchMachineByName(hostName);
+    }
+
+    /**
+     * Same as {@link #getMachineByName(String)}, served from the machine inventory if enabled.
+     *
+     * @param maxStaleness  How old the inventory may be, refreshed before answering if older
+     */
+    public Machine getMachineByName(String hostName, long maxStaleness, TimeUnit unit) {
+        MachineInventory inventory = this.machineInventory;
+        if (inventory != null) {
+            return inventory.getByHostname(hostName, maxStaleness, unit);
+        }
+        return getMachineByName(hostName);
+    }
+
+    private Machine fetchMachineByName(String hostName) {
         ResponseEntity<Machine[]> response = restClient.getRequest(Machine[].class, "/machines/?hostname=" + hostName);
         if (response.getBody() != null && response.getBody().length > 0) {
             return response.getBody()[0];
@@ -152,6 +556,19 @@ public class MaasClient {
         return restClient.getRequest(Machine.class, "/machines/?mac_address=" + macAddress).getBody();
     }
 
+    /**
+     * Same as {@link #getMachineByMacAddress(String)}, served from the machine inventory if enabled.
+     *
+     * @param maxStaleness  How old the inventory may be, refreshed before answering if older
+     */
+    public Machine getMachineByMacAddress(String macAddress, long maxStaleness, TimeUnit unit) {
+        MachineInventory inventory = this.machineInventory;
+        if (inventory != null) {
+            return inventory.getByMacAddress(macAddress, maxStaleness, unit);
+        }
+        return getMachineByMacAddress(macAddress);
+    }
+
     public Machine createMachine(Machine.Builder machineBuilder) {
         return restClient.postRequest(Machine.class, "/machines/", machineBuilder.buildAsArgs()).getBody();
     }
@@ -160,12 +577,76 @@ public class MaasClient {
         MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
         parts.add("machines", Arrays.asList(systemIds));
         ResponseEntity response = restClient.postRequest(String[].class, "/machines/?op=release", parts);
+        Arrays.stream(systemIds).forEach(this::invalidateMachine);
         if (RestClientErrorHandler.hasError(response.getStatusCode())) {
             return null;
         }
         return Arrays.asList((String[]) response.getBody());
     }
 
+    /**
+     * Release many machines, with a bounded number of concurrent requests.
+     * <p>
+     * Without disk erasure, machines are released by chunks of {@value #BULK_RELEASE_CHUNK_SIZE} with one
+     * bulk request per chunk. The bulk release does not support erase options, so with disk erasure each
+     * machine is released by its own request.
+     *
+     * @param systemIds     The system IDs of the machines to release
+     * @param comment       Comment recorded in the event log of the machines (optional)
+     * @param eraseDisk     Whether to erase the disks of the machines
+     * @param secureErase   Whether to use the secure erase feature of the disks (with eraseDisk)
+     * @param quickErase    Whether to only wipe the beginning and end of the disks (with eraseDisk)
+     * @return              The outcome of the release of each machine
+     */
+    public Map<String, BulkOutcome> releaseMachines(Collection<String> systemIds, String comment, boolean eraseDisk,
+            boolean secureErase, boolean quickErase) {
+        return releaseMachines(systemIds, comment, eraseDisk, secureErase, quickErase, DEFAULT_BULK_PARALLELISM);
+    }
+
+    /**
+     * @param parallelism   The maximum number of concurrent requests
+     * @see #releaseMachines(Collection, String, boolean, boolean, boolean)
+     */
+    public Map<String, BulkOutcome> releaseMachines(Collection<String> systemIds, String comment, boolean eraseDisk,
+            boolean secureErase, boolean quickErase, int parallelism) {
+        BulkExecutor bulkExecutor = new BulkExecutor(parallelism);
+        if (!eraseDisk) {
+            return bulkExecutor.execute(BulkExecutor.chunk(systemIds, BULK_RELEASE_CHUNK_SIZE),
+                                        chunk -> releaseChunk(chunk, comment));
+        }
+        return bulkExecutor.execute(BulkExecutor.chunk(systemIds, 1),
+                                    chunk -> toOutcomes(chunk,
+                                                        systemId -> releaseMachineById(systemId,
+                                                                                       comment,
+                                                                                       true,
+                                                                                       secureErase,
+                                                                                       quickErase)));
+    }
+
+    private Map<String, BulkOutcome> releaseChunk(List<String> systemIds, String comment) {
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        systemIds.forEach(systemId -> parts.add("machines", systemId));
+        if (comment != null && !comment.isEmpty()) {
+            parts.add("comment", comment);
+        }
+        ResponseEntity<String[]> response = restClient.postRequest(String[].class, "/machines/?op=release", parts);
+        systemIds.forEach(this::invalidateMachine);
+        if (RestClientErrorHandler.hasError(response.getStatusCode())) {
+            // The whole chunk is rejected if one machine cannot be released: find out which ones can
+            return toOutcomes(systemIds, systemId -> releaseMachineById(systemId, comment));
+        }
+        Set<String> released = new HashSet<>(Arrays.asList(response.getBody()));
+        return toOutcomes(systemIds, released::contains);
+    }
+
+    private static Map<String, BulkOutcome> toOutcomes(List<String> systemIds, Predicate<String> operation) {
+        Map<String, BulkOutcome> outcomes = new LinkedHashMap<>();
+        systemIds.forEach(systemId -> outcomes.put(systemId,
+                                                   operation.test(systemId) ? BulkOutcome.SUCCEEDED
+                                                                            : BulkOutcome.FAILED));
+        return outcomes;
+    }
+
     public boolean releaseMachineById(String systemId) {
         return releaseMachineById(systemId, null, false, false, false);
     }
@@ -185,17 +666,20 @@ public class MaasClient {
         parts.add("erase", eraseDisk);
         parts.add("secure_erase", secureErase);
         parts.add("quick_erase", quickErase);
-        ResponseEntity response = restClient.postRequestWithArgs(String[].class,
-                                                                 "/machines/{system_id}/?op=release",
-                                                                 parts,
-                                                                 args);
-        return !RestClientErrorHandler.hasError(response.getStatusCode()) && response.getBody().equals(systemId);
+        ResponseEntity<Machine> response = restClient.postRequestWithArgs(Machine.class,
+                                                                          "/machines/{system_id}/?op=release",
+                                                                          parts,
+                                                                          args);
+        invalidateMachine(systemId);
+        return !RestClientErrorHandler.hasError(response.getStatusCode()) && response.getBody() != null &&
+               systemId.equals(response.getBody().getSystemId());
     }
 
     public boolean deleteMachine(String systemId) {
         HashMap<String, String> args = new HashMap<>();
         args.put("system_id", systemId);
         ResponseEntity response = restClient.deleteRequestWithArgs(String.class, "/machines/{system_id}/", args);
+        invalidateMachine(systemId);
         return !RestClientErrorHandler.hasError(response.getStatusCode());
     }
 
@@ -244,13 +728,15 @@ public class MaasClient {
     public Machine allocateMachineById(String systemId) {
         MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
         parts.add("system_id", systemId);
-        return restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).getBody();
+        Machine machine = restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).getBody();
+        invalidateMachine(systemId);
+        return machine;
     }
 
     public Machine allocateMachineByHostname(String hostname) {
         MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
         parts.add("name", hostname);
-        return restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).getBody();
+        return invalidateMachine(restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).getBody());
     }
 
     public Machine allocateMachineByResources(int cpu_count, int mem, String arch) {
@@ -258,7 +744,7 @@ public class MaasClient {
         parts.add("cpu_count", cpu_count);
         parts.add("mem", mem);
         parts.add("arch", arch);
-        return restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).getBody();
+        return invalidateMachine(restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).getBody());
     }
 
     public Machine allocateMachineByResources(int cpu_count, int mem) {
@@ -266,13 +752,47 @@ public class MaasClient {
         parts.add("cpu_count", cpu_count);
         parts.add("mem", mem);
         try {
-            return restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).getBody();
+            return invalidateMachine(restClient.postRequest(Machine.class, "/machines/?op=allocate", parts).getBody());
         } catch (ClassCastException e) {
             return null;
             //e.printStackTrace();
         }
     }
 
+    /**
+     * Allocate a machine matching the provided resources.
+     *
+     * @param cpu_count The minimum number of CPUs
+     * @param mem       The minimum amount of memory (MB)
+     * @param arch      The architecture, or null for any
+     * @param zone      The zone, or null for any
+     * @return          The allocated machine, or null if no machine matches
+     */
+    public Machine allocateMachineByResources(int cpu_count, int mem, String arch, String zone) {
+        return allocateMachine(new AllocationConstraints.Builder().cpuCount(cpu_count)
+                                                                  .mem(mem)
+                                                                  .arch(arch)
+                                                                  .zone(zone)
+                                                                  .build());
+    }
+
+    /**
+     * Allocate a machine matching all the constraints, the placement being decided by MAAS.
+     *
+     * @param constraints   The constraints of the machine to allocate
+     * @return              The allocated machine (or the one which would be allocated on dry run), or null if no
+     *                      machine matches
+     */
+    public Machine allocateMachine(AllocationConstraints constraints) {
+        ResponseEntity<Machine> response = restClient.postRequest(Machine.class,
+                                                                  "/machines/?op=allocate",
+                                                                  constraints.toArgs());
+        if (RestClientErrorHandler.hasError(response.getStatusCode())) {
+            return null;
+        }
+        return invalidateMachine(response.getBody());
+    }
+
     public Machine commissionMachine(String systemId, boolean enableSSH, boolean skipNetworking, boolean skipStorage) {
         HashMap<String, String> args = new HashMap<>();
         args.put("system_id", systemId);
@@ -280,8 +800,13 @@ public class MaasClient {
         parts.add("enable_ssh", enableSSH);
         parts.add("skip_networking", skipNetworking);
         parts.add("skip_storage", skipStorage);
-        return restClient.postRequestWithArgs(Machine.class, "/machines/{system_id}/?op=commission", parts, args)
-                         .getBody();
+        Machine machine = restClient.postRequestWithArgs(Machine.class,
+                                                         "/machines/{system_id}/?op=commission",
+                                                         parts,
+                                                         args)
+                                    .getBody();
+        invalidateMachine(systemId);
+        return machine;
     }
 
     public Machine _commissionMachineBase64(String systemId, boolean enableSSH, boolean skipNetworking,
@@ -299,8 +824,13 @@ public class MaasClient {
         parts.add("skip_networking", new HttpEntity<>(encodeToBase64(skipNetworking), partHeaders));
         parts.add("skip_storage", new HttpEntity<>(encodeToBase64(skipStorage), partHeaders));
 
-        return restClient.postRequestWithArgs(Machine.class, "/machines/{system_id}/?op=commission", parts, args)
-                         .getBody();
+        Machine machine = restClient.postRequestWithArgs(Machine.class,
+                                                         "/machines/{system_id}/?op=commission",
+                                                         parts,
+                                                         args)
+                                    .getBody();
+        invalidateMachine(systemId);
+        return machine;
     }
 
     public Machine deployMachine(String systemId, String userData) {
@@ -341,7 +871,10 @@ public class MaasClient {
             parts.add("comment", comment);
         }
 
-        return restClient.postRequestWithArgs(Machine.class, "/machines/{system_id}/?op=deploy", parts, args).getBody();
+        Machine machine = restClient.postRequestWithArgs(Machine.class, "/machines/{system_id}/?op=deploy", parts, args)
+                                    .getBody();
+        invalidateMachine(systemId);
+        return machine;
     }
 
     public boolean powerOffMachine(String systemId) {
@@ -357,7 +890,7 @@ public class MaasClient {
         args.put("system_id", systemId);
         MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
         if (stopMode != null && !stopMode.isEmpty()) {
-            parts.add("stopMode", stopMode);
+            parts.add("stop_mode", stopMode);
         }
         if (comment != null && !comment.isEmpty()) {
             parts.add("comment", comment);
@@ -366,9 +899,60 @@ public class MaasClient {
                                                                  "/machines/{system_id}/?op=power_off",
                                                                  parts,
                                                                  args);
+        invalidateMachine(systemId);
         return !RestClientErrorHandler.hasError(response.getStatusCode());
     }
 
+    /**
+     * Power off many machines concurrently.
+     *
+     * @param systemIds The system IDs of the machines to power off
+     * @param stopMode  "hard" or "soft"
+     * @return          The outcome of the power off of each machine
+     */
+    public Map<String, BulkOutcome> powerOff(Collection<String> systemIds, String stopMode) {
+        return powerOff(systemIds,
+                        stopMode,
+                        DEFAULT_BULK_PARALLELISM,
+                        DEFAULT_BULK_REQUEST_TIMEOUT,
+                        TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param parallelism   The maximum number of concurrent requests
+     * @param timeout       The deadline of each request, counted from its dispatch, after which the machine is
+     *                      reported as timed out
+     * @see #powerOff(Collection, String)
+     */
+    public Map<String, BulkOutcome> powerOff(Collection<String> systemIds, String stopMode, int parallelism,
+            long timeout, TimeUnit unit) {
+        Predicate<String> powerOff = systemId -> powerOffMachine(systemId, stopMode);
+        return new BulkExecutor(parallelism, timeout, unit).execute(BulkExecutor.chunk(systemIds, 1),
+                                                                    chunk -> toOutcomes(chunk, powerOff));
+    }
+
+    /**
+     * Power on many machines concurrently.
+     *
+     * @param systemIds The system IDs of the machines to power on
+     * @return          The outcome of the power on of each machine
+     */
+    public Map<String, BulkOutcome> powerOn(Collection<String> systemIds) {
+        return powerOn(systemIds, DEFAULT_BULK_PARALLELISM, DEFAULT_BULK_REQUEST_TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param parallelism   The maximum number of concurrent requests
+     * @param timeout       The deadline of each request, counted from its dispatch, after which the machine is
+     *                      reported as timed out
+     * @see #powerOn(Collection)
+     */
+    public Map<String, BulkOutcome> powerOn(Collection<String> systemIds, int parallelism, long timeout,
+            TimeUnit unit) {
+        return new BulkExecutor(parallelism, timeout, unit).execute(BulkExecutor.chunk(systemIds, 1),
+                                                                    chunk -> toOutcomes(chunk, this::powerOnMachine));
+    }
+
     public boolean powerOnMachine(String systemId) {
         return powerOnMachine(systemId, null);
     }
@@ -385,10 +969,19 @@ public class MaasClient {
                                                                  "/machines/{system_id}/?op=power_on",
                                                                  parts,
                                                                  args);
+        invalidateMachine(systemId);
         return !RestClientErrorHandler.hasError(response.getStatusCode());
     }
 
     public List<Tag> getTags() {
+        MaasClientCache cache = this.cache;
+        if (cache != null) {
+            return cache.getTags().get(MaasClientCache.TAGS_KEY, key -> fetchTags());
+        }
+        return fetchTags();
+    }
+
+    private List<Tag> fetchTags() {
         ResponseEntity<Tag[]> response = restClient.getRequest(Tag[].class, "/tags/");
         if (RestClientErrorHandler.hasError(response.getStatusCode())) {
             return null;
@@ -396,8 +989,16 @@ public class MaasClient {
         return Arrays.asList(response.getBody());
     }
 
+    /**
+     * Create the tag unless it already exists.
+     * Existing tags are checked against the client tag registry, so the full tag list is only downloaded
+     * when the registry is outdated. If the tag has been created meanwhile by another client,
+     * the creation failure is detected and recorded without listing tags again.
+     *
+     * @return  true if the tag has been created, false if it already existed or could not be created
+     */
     public boolean createTagIfNotExists(String name, String description) {
-        if (getTags().stream().anyMatch(tag -> tag.getName().equals(name))) {
+        if (tagRegistry.exists(name, this::getTags)) {
             return false;
         }
         MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
@@ -407,8 +1008,24 @@ public class MaasClient {
         }
         // Set kernel options as None to avoid overriding options by an empty string
         parts.add("kernel_opts", null);
-        ResponseEntity response = restClient.postRequest(CommissioningScript.class, "/tags/", parts);
-        return !RestClientErrorHandler.hasError(response.getStatusCode());
+        ResponseEntity<String> response = restClient.postRequest(String.class, "/tags/", parts);
+        if (!RestClientErrorHandler.hasError(response.getStatusCode())) {
+            tagRegistry.register(name);
+            invalidateTags();
+            return true;
+        }
+        // Lost a creation race against another client
+        if (response.getBody() != null && response.getBody().contains(TAG_ALREADY_EXISTS_ERROR)) {
+            tagRegistry.register(name);
+        }
+        return false;
+    }
+
+    /**
+     * @return the registry of existing tag names used by {@link #createTagIfNotExists(String, String)}
+     */
+    public TagRegistry getTagRegistry() {
+        return tagRegistry;
     }
 
     public void updateTagNodesMapping(String name) {
@@ -428,10 +1045,206 @@ public class MaasClient {
                                                                  "/tags/{name}/?op=update_nodes",
                                                                  parts,
                                                                  args);
+        // Tag names of the machines have changed
+        invalidateMachine(systemId);
+        Arrays.stream(systemIds).forEach(this::invalidateMachine);
+        return !RestClientErrorHandler.hasError(response.getStatusCode());
+    }
+
+    /**
+     * Add and remove machines to/from a tag in a single request.
+     *
+     * @param tagName   The name of the tag to update
+     * @param toAdd     The system IDs of the machines to tag
+     * @param toRemove  The system IDs of the machines to untag
+     * @return          true if the tag has been updated
+     */
+    public boolean updateTagNodes(String tagName, Collection<String> toAdd, Collection<String> toRemove) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("name", tagName);
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        toAdd.forEach(systemId -> parts.add("add", systemId));
+        toRemove.forEach(systemId -> parts.add("remove", systemId));
+        ResponseEntity response = restClient.postRequestWithArgs(String.class,
+                                                                 "/tags/{name}/?op=update_nodes",
+                                                                 parts,
+                                                                 args);
+        // Tag names of the machines have changed
+        toAdd.forEach(this::invalidateMachine);
+        toRemove.forEach(this::invalidateMachine);
         return !RestClientErrorHandler.hasError(response.getStatusCode());
     }
 
-    private boolean checkCredentials(String token) {
+    /**
+     * Reconcile the machines tagged with the provided tag with the desired ones.
+     * <p>
+     * The difference with the current membership is computed locally and applied with as few
+     * update_nodes requests as possible, each one carrying at most {@value #MAX_TAG_UPDATE_NODES} machines.
+     *
+     * @param tagName           The name of the tag (it must exist)
+     * @param desiredSystemIds  The system IDs of all the machines that must be tagged
+     * @return                  The changes applied and the ones whose request failed, or null if the current
+     *                          membership could not be retrieved
+     */
+    public TagSyncResult syncTagMembership(String tagName, Set<String> desiredSystemIds) {
+        Set<String> current = getTaggedSystemIds(tagName);
+        if (current == null) {
+            return null;
+        }
+        Set<String> desired = new HashSet<>(desiredSystemIds);
+
+        Set<String> toAdd = new HashSet<>(desired);
+        toAdd.removeIf(current::contains);
+        Set<String> toRemove = new HashSet<>(current);
+        toRemove.removeIf(systemId -> !desired.contains(systemId));
+
+        List<String> adds = new ArrayList<>(toAdd);
+        List<String> removes = new ArrayList<>(toRemove);
+        Set<String> added = new HashSet<>(), removed = new HashSet<>();
+        Set<String> failedToAdd = new HashSet<>(), failedToRemove = new HashSet<>();
+        int addIndex = 0, removeIndex = 0, requests = 0;
+        while (addIndex < adds.size() || removeIndex < removes.size()) {
+            int addCount = Math.min(adds.size() - addIndex, MAX_TAG_UPDATE_NODES);
+            int removeCount = Math.min(removes.size() - removeIndex, MAX_TAG_UPDATE_NODES - addCount);
+            List<String> addChunk = adds.subList(addIndex, addIndex + addCount);
+            List<String> removeChunk = removes.subList(removeIndex, removeIndex + removeCount);
+            // Only the machines of the chunks applied by MAAS are reported as changed
+            if (updateTagNodes(tagName, addChunk, removeChunk)) {
+                added.addAll(addChunk);
+                removed.addAll(removeChunk);
+            } else {
+                failedToAdd.addAll(addChunk);
+                failedToRemove.addAll(removeChunk);
+            }
+            addIndex += addCount;
+            removeIndex += removeCount;
+            requests++;
+        }
+
+        return new TagSyncResult(tagName,
+                                 added,
+                                 removed,
+                                 failedToAdd,
+                                 failedToRemove,
+                                 current.size() - toRemove.size(),
+                                 requests);
+    }
+
+    private Set<String> getTaggedSystemIds(String tagName) {
+        HashMap<String, String> args = new HashMap<>();
+        args.put("name", tagName);
+        ResponseEntity<MachineSummary[]> response = restClient.getRequestWithArgs(MachineSummary[].class,
+                                                                                  "/tags/{name}/?op=machines",
+                                                                                  args);
+        if (RestClientErrorHandler.hasError(response.getStatusCode())) {
+            return null;
+        }
+        return Arrays.stream(response.getBody()).map(MachineSummary::getSystemId).collect(Collectors.toSet());
+    }
+
+    private void invalidateMachine(String systemId) {
+        MaasClientCache cache = this.cache;
+        if (cache != null) {
+            cache.invalidateMachine(systemId);
+        }
+    }
+
+    private void invalidateTags() {
+        MaasClientCache cache = this.cache;
+        if (cache != null) {
+            cache.invalidateTags();
+        }
+    }
+
+    private Machine invalidateMachine(Machine machine) {
+        if (machine != null && machine.getSystemId() != null) {
+            invalidateMachine(machine.getSystemId());
+        }
+        return machine;
+    }
+
+    /**
+     * Retrieve the machines matching any of the values of a <code>/machines/</code> filter. The values are sent
+     * as encoded template arguments, split over several requests to keep the query below
+     * {@value #MAX_FILTER_QUERY_LENGTH} characters.
+     */
+    private <T> List<T> getByFilter(Class<T[]> valueType, String filter, Collection<String> values) {
+        List<T> results = new ArrayList<>();
+        for (List<String> chunk : chunkByQueryLength(filter, values)) {
+            MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+            parameters.put(filter, chunk);
+            List<T> chunkResults = getByQuery(valueType, parameters);
+            if (chunkResults == null) {
+                return null;
+            }
+            results.addAll(chunkResults);
+        }
+        return results;
+    }
+
+    /**
+     * Retrieve the machines matching the query parameters, which are sent as template arguments to be encoded.
+     */
+    private <T> List<T> getByQuery(Class<T[]> valueType, MultiValueMap<String, String> parameters) {
+        HashMap<String, String> args = new HashMap<>();
+        StringBuilder resourceUrl = new StringBuilder("/machines/");
+        parameters.forEach((name, values) -> values.forEach(value -> {
+            String argName = "arg" + args.size();
+            resourceUrl.append(args.isEmpty() ? "?" : "&").append(name).append("={").append(argName).append("}");
+            args.put(argName, value);
+        }));
+        ResponseEntity<T[]> response = restClient.getRequestWithArgs(valueType, resourceUrl.toString(), args);
+        if (RestClientErrorHandler.hasError(response.getStatusCode())) {
+            return null;
+        }
+        return Arrays.asList(response.getBody());
+    }
+
+    /**
+     * Split the distinct values into chunks whose query (<code>filter=value&amp;...</code>) does not exceed
+     * {@value #MAX_FILTER_QUERY_LENGTH} characters once encoded, keeping their order.
+     */
+    static List<List<String>> chunkByQueryLength(String filter, Collection<String> values) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        int queryLength = 0;
+        for (String value : new LinkedHashSet<>(values)) {
+            // filter=value&
+            int parameterLength = filter.length() + encodedLength(value) + 2;
+            if (!chunk.isEmpty() && queryLength + parameterLength > MAX_FILTER_QUERY_LENGTH) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                queryLength = 0;
+            }
+            chunk.add(value);
+            queryLength += parameterLength;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static int encodedLength(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name()).length();
+        } catch (UnsupportedEncodingException e) {
+            // Worst case: every character percent-encoded
+            return value.length() * 3;
+        }
+    }
+
+    private <T> boolean forEach(Stream<T> stream, Consumer<T> action) {
+        if (stream == null) {
+            return false;
+        }
+        try (Stream<T> elements = stream) {
+            elements.forEach(action);
+            return true;
+        }
+    }
+
+    static boolean checkCredentials(String token) {
         String[] tokenParts = token.split(":");
         return tokenParts.length == 3;
     }
@@ -440,7 +1253,7 @@ public class MaasClient {
         return getMaasConfig("maas_name") != null;
     }
 
-    private String encodeToBase64(Object src) {
+    static String encodeToBase64(Object src) {
         return Base64.getMimeEncoder(76, "\r\n".getBytes()).encodeToString(src.toString().getBytes());
     }
 }
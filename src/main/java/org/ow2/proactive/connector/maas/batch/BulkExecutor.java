@@ -0,0 +1,224 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.batch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.log4j.Logger;
+
+
+/**
+ * Runs a bulk operation chunk by chunk, with a bounded number of chunks in flight, and gathers the outcome
+ * of each item.
+ * <p>
+ * Each chunk request has its own optional deadline, counted from the moment it is dispatched. A request
+ * without answer at its deadline is reported as {@link BulkOutcome#TIMED_OUT}: its worker is interrupted on a
+ * best effort basis and its slot is given to the next chunk, so one slow request does not starve the others.
+ * Chunks that were never dispatched (e.g. the caller was interrupted) are reported as
+ * {@link BulkOutcome#NOT_SENT}. The requests run on a worker pool shared by all executors.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class BulkExecutor {
+
+    /**
+     * Workers shared by all bulk operations, created on demand and reclaimed once idle
+     */
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "MAAS bulk operation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Logger logger = Logger.getLogger(BulkExecutor.class);
+
+    private final int parallelism;
+
+    private final long timeoutNanos;
+
+    /**
+     * @param parallelism   The maximum number of chunks processed at the same time
+     */
+    public BulkExecutor(int parallelism) {
+        this(parallelism, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param parallelism   The maximum number of chunks processed at the same time
+     * @param timeout       The deadline of each chunk request from its dispatch, or 0 for none
+     */
+    public BulkExecutor(int parallelism, long timeout, TimeUnit unit) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be strictly positive");
+        }
+        this.parallelism = parallelism;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Split the items into chunks of at most the given size, keeping their order.
+     */
+    public static <K> List<List<K>> chunk(Collection<K> items, int chunkSize) {
+        List<List<K>> chunks = new ArrayList<>();
+        List<K> chunk = new ArrayList<>(chunkSize);
+        for (K item : items) {
+            chunk.add(item);
+            if (chunk.size() == chunkSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Apply the action to every chunk and wait for all of them, or for their deadline.
+     *
+     * @param chunks    The chunks of items
+     * @param action    The operation applied to a chunk, returning the outcome of each of its items
+     * @return          The outcome of every item, in the order of the chunks: {@link BulkOutcome#FAILED} for the
+     *                  items of a chunk whose operation threw or did not report them
+     */
+    public <K> Map<K, BulkOutcome> execute(List<List<K>> chunks, Function<List<K>, Map<K, BulkOutcome>> action) {
+        Map<K, BulkOutcome> outcomes = new LinkedHashMap<>();
+        chunks.forEach(chunk -> chunk.forEach(item -> outcomes.put(item, BulkOutcome.NOT_SENT)));
+        BlockingQueue<ChunkRequest<K>> answered = new LinkedBlockingQueue<>();
+        List<ChunkRequest<K>> inFlight = new ArrayList<>(parallelism);
+        int next = 0;
+        try {
+            while (next < chunks.size() || !inFlight.isEmpty()) {
+                while (next < chunks.size() && inFlight.size() < parallelism) {
+                    inFlight.add(dispatch(chunks.get(next++), action, answered));
+                }
+                ChunkRequest<K> request = awaitAnswer(answered, inFlight);
+                // Answers of abandoned requests are ignored
+                if (request != null && inFlight.remove(request)) {
+                    request.chunk.forEach(item -> outcomes.put(item, request.getOutcome(item)));
+                }
+                expire(inFlight, outcomes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Stop waiting: the requests in flight may still be applied, the other ones are not sent
+            inFlight.forEach(request -> abandon(request, outcomes));
+        }
+        return outcomes;
+    }
+
+    private <K> ChunkRequest<K> dispatch(List<K> chunk, Function<List<K>, Map<K, BulkOutcome>> action,
+            BlockingQueue<ChunkRequest<K>> answered) {
+        ChunkRequest<K> request = new ChunkRequest<>(chunk, System.nanoTime() + timeoutNanos);
+        request.task = WORKERS.submit(() -> {
+            Map<K, BulkOutcome> chunkOutcomes = null;
+            try {
+                chunkOutcomes = action.apply(chunk);
+            } catch (RuntimeException e) {
+                logger.error("Bulk operation chunk failed", e);
+            }
+            request.outcomes = chunkOutcomes != null ? chunkOutcomes : new LinkedHashMap<>();
+            request.answered = true;
+            answered.add(request);
+        });
+        return request;
+    }
+
+    /**
+     * Wait for the next answer, or until the first deadline of the requests in flight.
+     *
+     * @return the answered request, or null if the first deadline has expired
+     */
+    private <K> ChunkRequest<K> awaitAnswer(BlockingQueue<ChunkRequest<K>> answered, List<ChunkRequest<K>> inFlight)
+            throws InterruptedException {
+        if (timeoutNanos <= 0) {
+            return answered.take();
+        }
+        long firstDeadline = inFlight.stream().mapToLong(request -> request.deadline).min().orElse(0);
+        return answered.poll(Math.max(firstDeadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Abandon the requests past their deadline which have not been answered yet.
+     */
+    private <K> void expire(List<ChunkRequest<K>> inFlight, Map<K, BulkOutcome> outcomes) {
+        if (timeoutNanos <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (Iterator<ChunkRequest<K>> iterator = inFlight.iterator(); iterator.hasNext();) {
+            ChunkRequest<K> request = iterator.next();
+            if (!request.answered && now - request.deadline >= 0) {
+                iterator.remove();
+                abandon(request, outcomes);
+            }
+        }
+    }
+
+    private static <K> void abandon(ChunkRequest<K> request, Map<K, BulkOutcome> outcomes) {
+        request.task.cancel(true);
+        request.chunk.forEach(item -> outcomes.put(item, BulkOutcome.TIMED_OUT));
+    }
+
+    private static class ChunkRequest<K> {
+
+        private final List<K> chunk;
+
+        /**
+         * Deadline of the request, in {@link System#nanoTime()} time
+         */
+        private final long deadline;
+
+        private Future<?> task;
+
+        private volatile Map<K, BulkOutcome> outcomes;
+
+        private volatile boolean answered;
+
+        private ChunkRequest(List<K> chunk, long deadline) {
+            this.chunk = chunk;
+            this.deadline = deadline;
+        }
+
+        private BulkOutcome getOutcome(K item) {
+            return outcomes.getOrDefault(item, BulkOutcome.FAILED);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.batch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.ow2.proactive.connector.maas.MaasClient;
+
+
+/**
+ * Micro-batching writer of tag memberships.
+ * <p>
+ * Requests to add/remove machines to/from the same tag are gathered during a short window (or until the
+ * batch reaches its size cap) and sent as a single <code>update_nodes</code> request. The future of each
+ * caller is completed when its batch has been sent, with the success of the whole batch.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class TagMembershipBatcher {
+
+    private static final int SENDER_THREADS = 2;
+
+    private final Logger logger = Logger.getLogger(TagMembershipBatcher.class);
+
+    private final MaasClient maasClient;
+
+    private final long windowMillis;
+
+    private final int maxBatchSize;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, Batch> pendingBatches = new HashMap<>();
+
+    /**
+     * @param window        How long requests for a tag are gathered before being sent
+     * @param maxBatchSize  Number of machines after which a batch is sent without waiting for the window end
+     */
+    public TagMembershipBatcher(MaasClient maasClient, long window, TimeUnit unit, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be strictly positive");
+        }
+        this.maasClient = maasClient;
+        this.windowMillis = unit.toMillis(window);
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newScheduledThreadPool(SENDER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "MAAS tag membership batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Tag the machine with the next batch of the tag.
+     *
+     * @return a future completed with true once the machine has been tagged
+     */
+    public CompletableFuture<Boolean> add(String tagName, String systemId) {
+        return enqueue(tagName, systemId, true);
+    }
+
+    /**
+     * Untag the machine with the next batch of the tag.
+     *
+     * @return a future completed with true once the machine has been untagged
+     */
+    public CompletableFuture<Boolean> remove(String tagName, String systemId) {
+        return enqueue(tagName, systemId, false);
+    }
+
+    /**
+     * Send all pending batches, then stop the batcher.
+     */
+    public void shutdown() {
+        List<Batch> batches;
+        synchronized (this) {
+            batches = new ArrayList<>(pendingBatches.values());
+            pendingBatches.clear();
+        }
+        batches.forEach(batch -> {
+            batch.flushTask.cancel(false);
+            send(batch);
+        });
+        scheduler.shutdownNow();
+    }
+
+    private synchronized CompletableFuture<Boolean> enqueue(String tagName, String systemId, boolean add) {
+        Batch batch = pendingBatches.get(tagName);
+        if (batch == null) {
+            Batch newBatch = new Batch(tagName);
+            newBatch.flushTask = scheduler.schedule(() -> flush(newBatch), windowMillis, TimeUnit.MILLISECONDS);
+            pendingBatches.put(tagName, newBatch);
+            batch = newBatch;
+        }
+
+        CompletableFuture<Boolean> future = batch.enqueue(systemId, add);
+
+        if (batch.size() >= maxBatchSize) {
+            pendingBatches.remove(tagName);
+            batch.flushTask.cancel(false);
+            Batch fullBatch = batch;
+            scheduler.execute(() -> send(fullBatch));
+        }
+        return future;
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this) {
+            if (!pendingBatches.remove(batch.tagName, batch)) {
+                // Already sent because full
+                return;
+            }
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        boolean success;
+        try {
+            success = maasClient.updateTagNodes(batch.tagName, batch.toAdd, batch.toRemove);
+        } catch (RuntimeException e) {
+            logger.error("Unable to update the machines of tag " + batch.tagName, e);
+            batch.futures.forEach(future -> future.completeExceptionally(e));
+            return;
+        }
+        batch.futures.forEach(future -> future.complete(success));
+    }
+
+    private static class Batch {
+
+        private final String tagName;
+
+        private final Set<String> toAdd = new LinkedHashSet<>();
+
+        private final Set<String> toRemove = new LinkedHashSet<>();
+
+        private final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        private ScheduledFuture<?> flushTask;
+
+        private Batch(String tagName) {
+            this.tagName = tagName;
+        }
+
+        private CompletableFuture<Boolean> enqueue(String systemId, boolean add) {
+            // The last request for a machine wins within a batch
+            if (add) {
+                toRemove.remove(systemId);
+                toAdd.add(systemId);
+            } else {
+                toAdd.remove(systemId);
+                toRemove.add(systemId);
+            }
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            futures.add(future);
+            return future;
+        }
+
+        private int size() {
+            return toAdd.size() + toRemove.size();
+        }
+    }
+}
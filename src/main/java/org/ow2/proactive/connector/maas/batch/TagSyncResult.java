@@ -0,0 +1,89 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.batch;
+
+import java.util.Set;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+
+/**
+ * Outcome of a tag membership reconciliation.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@Getter(AccessLevel.PUBLIC)
+@ToString
+@AllArgsConstructor
+public class TagSyncResult {
+
+    private String tagName;
+
+    /**
+     * System IDs of the machines that have been tagged
+     */
+    private Set<String> added;
+
+    /**
+     * System IDs of the machines that have been untagged
+     */
+    private Set<String> removed;
+
+    /**
+     * System IDs of the machines to tag whose update_nodes request failed
+     */
+    private Set<String> failedToAdd;
+
+    /**
+     * System IDs of the machines to untag whose update_nodes request failed
+     */
+    private Set<String> failedToRemove;
+
+    /**
+     * Number of machines that were already tagged and remained so
+     */
+    private int unchanged;
+
+    /**
+     * Number of update_nodes requests sent
+     */
+    private int requests;
+
+    /**
+     * @return true if all update_nodes requests succeeded
+     */
+    public boolean isSuccessful() {
+        return failedToAdd.isEmpty() && failedToRemove.isEmpty();
+    }
+
+    public boolean hasChanges() {
+        return !added.isEmpty() || !removed.isEmpty();
+    }
+}
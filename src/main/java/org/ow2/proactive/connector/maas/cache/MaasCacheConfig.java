@@ -0,0 +1,106 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+
+/**
+ * Settings of the client-side cache of MAAS lookups: time-to-live per resource and size bound.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@Getter(AccessLevel.PUBLIC)
+@ToString
+public class MaasCacheConfig {
+
+    private final long machineTtlMillis;
+
+    private final long tagTtlMillis;
+
+    private final long configTtlMillis;
+
+    private final int maxEntries;
+
+    public MaasCacheConfig(Builder builder) {
+        machineTtlMillis = builder.machineTtlMillis;
+        tagTtlMillis = builder.tagTtlMillis;
+        configTtlMillis = builder.configTtlMillis;
+        maxEntries = builder.maxEntries;
+    }
+
+    public static class Builder {
+
+        private long machineTtlMillis = TimeUnit.SECONDS.toMillis(5);
+
+        private long tagTtlMillis = TimeUnit.SECONDS.toMillis(30);
+
+        private long configTtlMillis = TimeUnit.MINUTES.toMillis(5);
+
+        private int maxEntries = 10000;
+
+        /**
+         * Time-to-live of machines looked up by ID or hostname.
+         */
+        public Builder machineTtl(long duration, TimeUnit unit) {
+            this.machineTtlMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Time-to-live of the tag list.
+         */
+        public Builder tagTtl(long duration, TimeUnit unit) {
+            this.tagTtlMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Time-to-live of MAAS configuration options.
+         */
+        public Builder configTtl(long duration, TimeUnit unit) {
+            this.configTtlMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Maximum number of entries of each cached resource, least recently used are evicted first.
+         */
+        public Builder maxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public MaasCacheConfig build() {
+            return new MaasCacheConfig(this);
+        }
+    }
+}
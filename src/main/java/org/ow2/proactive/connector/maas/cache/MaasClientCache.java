@@ -0,0 +1,127 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.ow2.proactive.connector.maas.data.Machine;
+import org.ow2.proactive.connector.maas.data.Tag;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+
+/**
+ * Client-side caches of the MAAS lookups performed in tight loops (machines, tags, configuration).
+ * <p>
+ * Entries expire after their resource TTL and are invalidated when the owning client mutates the
+ * corresponding resource.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@Getter(AccessLevel.PUBLIC)
+public class MaasClientCache {
+
+    /**
+     * Single key of the tag list cache.
+     */
+    public static final String TAGS_KEY = "tags";
+
+    private final TtlCache<String, Machine> machinesById;
+
+    private final TtlCache<String, Machine> machinesByName;
+
+    private final TtlCache<String, List<Tag>> tags;
+
+    private final TtlCache<String, String> config;
+
+    /**
+     * Host names under which each machine was cached, so that invalidating a machine does not scan the cache
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Set<String>> hostnamesBySystemId = new ConcurrentHashMap<>();
+
+    public MaasClientCache(MaasCacheConfig cacheConfig) {
+        machinesById = new TtlCache<>(cacheConfig.getMachineTtlMillis(), cacheConfig.getMaxEntries());
+        machinesByName = new TtlCache<>(cacheConfig.getMachineTtlMillis(), cacheConfig.getMaxEntries());
+        tags = new TtlCache<>(cacheConfig.getTagTtlMillis(), 1);
+        config = new TtlCache<>(cacheConfig.getConfigTtlMillis(), cacheConfig.getMaxEntries());
+    }
+
+    /**
+     * Return the cached machine with the host name if still fresh, otherwise load and cache it. Machines must be
+     * cached by name through this method to be dropped by {@link #invalidateMachine(String)}.
+     */
+    public Machine getMachineByName(String hostname, Function<String, Machine> loader) {
+        return machinesByName.get(hostname, name -> {
+            Machine machine = loader.apply(name);
+            if (machine != null) {
+                hostnamesBySystemId.computeIfAbsent(machine.getSystemId(), systemId -> ConcurrentHashMap.newKeySet())
+                                   .add(name);
+            }
+            return machine;
+        });
+    }
+
+    /**
+     * Drop every cached representation of the machine.
+     */
+    public void invalidateMachine(String systemId) {
+        machinesById.invalidate(systemId);
+        Set<String> hostnames = hostnamesBySystemId.remove(systemId);
+        if (hostnames != null) {
+            hostnames.forEach(machinesByName::invalidate);
+        }
+        // The machines being loaded by name are not known yet
+        machinesByName.invalidateLoading();
+    }
+
+    public void invalidateTags() {
+        tags.invalidateAll();
+    }
+
+    public void invalidateAll() {
+        machinesById.invalidateAll();
+        machinesByName.invalidateAll();
+        hostnamesBySystemId.clear();
+        tags.invalidateAll();
+        config.invalidateAll();
+    }
+
+    /**
+     * @return the overall hit ratio of the machine, tag and configuration caches
+     */
+    public double getHitRatio() {
+        long hits = machinesById.getHits() + machinesByName.getHits() + tags.getHits() + config.getHits();
+        long misses = machinesById.getMisses() + machinesByName.getMisses() + tags.getMisses() + config.getMisses();
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+}
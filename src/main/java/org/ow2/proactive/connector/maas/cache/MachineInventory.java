@@ -0,0 +1,213 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.ow2.proactive.connector.maas.MaasClient;
+import org.ow2.proactive.connector.maas.data.Interface;
+import org.ow2.proactive.connector.maas.data.Machine;
+
+
+/**
+ * In-memory inventory of the MAAS machines, indexed by system ID, hostname, MAC address, tag and status.
+ * <p>
+ * The inventory is rebuilt by periodic refreshes of <code>/machines/</code> (decoded one machine at a time),
+ * and lookups are then served locally in O(1). Each lookup states how stale its answer may be: if the
+ * last refresh is older than this bound, the inventory is refreshed before answering.
+ * <p>
+ * The inventory of a client is enabled with {@link MaasClient#enableMachineInventory(long, TimeUnit)}, its
+ * lookups taking a staleness bound being then served from it.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class MachineInventory {
+
+    private final Logger logger = Logger.getLogger(MachineInventory.class);
+
+    private final MaasClient maasClient;
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Snapshot snapshot = new Snapshot();
+
+    /**
+     * Create an inventory refreshed in background at the given interval.
+     */
+    public MachineInventory(MaasClient maasClient, long refreshInterval, TimeUnit unit) {
+        this.maasClient = maasClient;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MAAS machine inventory refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshInterval, unit);
+    }
+
+    /**
+     * Rebuild the inventory from the MAAS server.
+     *
+     * @return true if the inventory has been refreshed, false if machines could not be retrieved
+     *         (the previous inventory is then kept)
+     */
+    public synchronized boolean refresh() {
+        Snapshot newSnapshot = new Snapshot(System.currentTimeMillis());
+        if (!maasClient.forEachMachine(newSnapshot::index)) {
+            logger.warn("Unable to refresh the machine inventory, keeping the previous one");
+            return false;
+        }
+        snapshot = newSnapshot;
+        return true;
+    }
+
+    public Machine getBySystemId(String systemId, long maxStaleness, TimeUnit unit) {
+        return fresh(maxStaleness, unit).bySystemId.get(systemId);
+    }
+
+    public Machine getByHostname(String hostname, long maxStaleness, TimeUnit unit) {
+        return fresh(maxStaleness, unit).byHostname.get(hostname);
+    }
+
+    public Machine getByMacAddress(String macAddress, long maxStaleness, TimeUnit unit) {
+        return fresh(maxStaleness, unit).byMacAddress.get(normalizeMacAddress(macAddress));
+    }
+
+    public List<Machine> getByTagName(String tagName, long maxStaleness, TimeUnit unit) {
+        return unmodifiable(fresh(maxStaleness, unit).byTagName.get(tagName));
+    }
+
+    public List<Machine> getByStatus(long status, long maxStaleness, TimeUnit unit) {
+        return unmodifiable(fresh(maxStaleness, unit).byStatus.get(status));
+    }
+
+    /**
+     * @return the age of the inventory in milliseconds, or -1 if it has never been loaded
+     */
+    public long getAgeMillis() {
+        Snapshot current = snapshot;
+        return current.timestamp < 0 ? -1 : System.currentTimeMillis() - current.timestamp;
+    }
+
+    public int size() {
+        return snapshot.bySystemId.size();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private Snapshot fresh(long maxStaleness, TimeUnit unit) {
+        long maxStalenessMillis = unit.toMillis(maxStaleness);
+        if (isStale(snapshot, maxStalenessMillis)) {
+            synchronized (this) {
+                // Another caller may have refreshed the inventory meanwhile
+                if (isStale(snapshot, maxStalenessMillis)) {
+                    refresh();
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private boolean isStale(Snapshot current, long maxStalenessMillis) {
+        return current.timestamp < 0 || System.currentTimeMillis() - current.timestamp > maxStalenessMillis;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // Never let an exception kill the periodic task
+            logger.error("Machine inventory refresh failed", e);
+        }
+    }
+
+    private static List<Machine> unmodifiable(List<Machine> machines) {
+        return machines != null ? Collections.unmodifiableList(machines) : Collections.emptyList();
+    }
+
+    private static String normalizeMacAddress(String macAddress) {
+        return macAddress != null ? macAddress.toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * Immutable (once published) set of indexes built by one refresh.
+     */
+    private static class Snapshot {
+
+        private final long timestamp;
+
+        private final Map<String, Machine> bySystemId = new HashMap<>();
+
+        private final Map<String, Machine> byHostname = new HashMap<>();
+
+        private final Map<String, Machine> byMacAddress = new HashMap<>();
+
+        private final Map<String, List<Machine>> byTagName = new HashMap<>();
+
+        private final Map<Long, List<Machine>> byStatus = new HashMap<>();
+
+        private Snapshot() {
+            this(-1);
+        }
+
+        private Snapshot(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        private void index(Machine machine) {
+            bySystemId.put(machine.getSystemId(), machine);
+            if (machine.getHostname() != null) {
+                byHostname.put(machine.getHostname(), machine);
+            }
+            if (machine.getInterfaceSet() != null) {
+                for (Interface networkInterface : machine.getInterfaceSet()) {
+                    if (networkInterface.getMacAddress() != null) {
+                        byMacAddress.put(normalizeMacAddress(networkInterface.getMacAddress()), machine);
+                    }
+                }
+            }
+            if (machine.getTagNames() != null) {
+                for (String tagName : machine.getTagNames()) {
+                    byTagName.computeIfAbsent(tagName, key -> new ArrayList<>()).add(machine);
+                }
+            }
+            if (machine.getStatus() != null) {
+                byStatus.computeIfAbsent(machine.getStatus(), key -> new ArrayList<>()).add(machine);
+            }
+        }
+    }
+}
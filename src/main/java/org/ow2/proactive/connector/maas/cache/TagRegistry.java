@@ -0,0 +1,146 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.cache;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.ow2.proactive.connector.maas.data.Tag;
+
+
+/**
+ * Concurrent set of the tag names known to exist on the MAAS server.
+ * <p>
+ * The set is loaded from the full tag list on first use, and reloaded lazily once older than the refresh
+ * interval. In between, it is kept up to date by the tag creations of the client (including creations
+ * that failed because another client created the tag first), so checking a tag does not require
+ * downloading the whole tag list.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class TagRegistry {
+
+    public static final long DEFAULT_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
+    private final Set<String> knownTagNames = ConcurrentHashMap.newKeySet();
+
+    private final long refreshIntervalMillis;
+
+    private volatile long lastLoadTime = -1;
+
+    /**
+     * Reload of the tag list in progress for non-blocking checks (guarded by this registry)
+     */
+    private CompletableFuture<Void> pendingLoad;
+
+    public TagRegistry() {
+        this(DEFAULT_REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    public TagRegistry(long refreshInterval, TimeUnit unit) {
+        this.refreshIntervalMillis = unit.toMillis(refreshInterval);
+    }
+
+    /**
+     * Check whether the tag is known to exist, (re)loading the tag list first if never loaded or outdated.
+     *
+     * @param tagName   The name of the tag
+     * @param loader    Retrieves the full tag list from the server (null on error)
+     * @return          true if the tag is known to exist
+     */
+    public boolean exists(String tagName, Supplier<List<Tag>> loader) {
+        if (isOutdated()) {
+            synchronized (this) {
+                // Another caller may have reloaded the list meanwhile
+                if (isOutdated()) {
+                    load(loader.get());
+                }
+            }
+        }
+        return knownTagNames.contains(tagName);
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #exists(String, Supplier)}: concurrent checks share the same reload.
+     *
+     * @param tagName   The name of the tag
+     * @param loader    Starts the retrieval of the full tag list from the server (completed with null on error)
+     * @return          A future completed with true if the tag is known to exist
+     */
+    public CompletableFuture<Boolean> existsAsync(String tagName, Supplier<CompletableFuture<List<Tag>>> loader) {
+        if (!isOutdated()) {
+            return CompletableFuture.completedFuture(knownTagNames.contains(tagName));
+        }
+        CompletableFuture<Void> load;
+        synchronized (this) {
+            if (pendingLoad == null || pendingLoad.isDone()) {
+                pendingLoad = loader.get().handle((tags, throwable) -> {
+                    synchronized (this) {
+                        if (isOutdated()) {
+                            load(throwable == null ? tags : null);
+                        }
+                    }
+                    return null;
+                });
+            }
+            load = pendingLoad;
+        }
+        return load.thenApply(loaded -> knownTagNames.contains(tagName));
+    }
+
+    /**
+     * Record a tag as existing, e.g. after a successful creation.
+     */
+    public void register(String tagName) {
+        knownTagNames.add(tagName);
+    }
+
+    /**
+     * Force the tag list to be reloaded on next check.
+     */
+    public void invalidate() {
+        lastLoadTime = -1;
+    }
+
+    private boolean isOutdated() {
+        return lastLoadTime < 0 || System.currentTimeMillis() - lastLoadTime > refreshIntervalMillis;
+    }
+
+    private void load(List<Tag> tags) {
+        if (tags == null) {
+            // Keep what is known and retry on next check
+            return;
+        }
+        knownTagNames.clear();
+        tags.forEach(tag -> knownTagNames.add(tag.getName()));
+        lastLoadTime = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+
+/**
+ * Size-bounded LRU cache whose entries expire after a fixed time-to-live.
+ * <p>
+ * Values are loaded outside of the cache lock, and null values (i.e. failed requests) are never cached.
+ * A value whose key is invalidated (or put) while it is being loaded may predate the invalidation, so it is
+ * returned to its caller but not cached.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class TtlCache<K, V> {
+
+    private final long ttlMillis;
+
+    private final Map<K, Entry<V>> entries;
+
+    /**
+     * Generations of the keys being loaded, bumped by invalidations (guarded by the entries lock)
+     */
+    private final Map<K, Generation> generations = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public TtlCache(long ttlMillis, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The cache size must be strictly positive");
+        }
+        this.ttlMillis = ttlMillis;
+        this.entries = new LruMap<>(maxEntries);
+    }
+
+    /**
+     * Return the cached value if still fresh, otherwise load and cache it.
+     *
+     * @param key       The key of the value
+     * @param loader    The function loading the value (e.g. a MAAS request) on a miss
+     * @return          The cached or loaded value
+     */
+    public V get(K key, Function<K, V> loader) {
+        Generation generation;
+        long loadGeneration;
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && !entry.isExpired()) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            generation = generations.computeIfAbsent(key, k -> new Generation());
+            generation.loads++;
+            loadGeneration = generation.value;
+        }
+        misses.incrementAndGet();
+        V value = null;
+        try {
+            value = loader.apply(key);
+            return value;
+        } finally {
+            synchronized (entries) {
+                // Do not cache a value loaded before the key was invalidated
+                if (value != null && generation.value == loadGeneration) {
+                    entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+                }
+                if (--generation.loads == 0) {
+                    generations.remove(key);
+                }
+            }
+        }
+    }
+
+    public void put(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+            bumpGeneration(key);
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+            bumpGeneration(key);
+        }
+    }
+
+    /**
+     * Remove every entry whose value matches the predicate.
+     */
+    public void invalidateIf(Predicate<V> predicate) {
+        synchronized (entries) {
+            for (Iterator<Entry<V>> iterator = entries.values().iterator(); iterator.hasNext();) {
+                if (predicate.test(iterator.next().value)) {
+                    iterator.remove();
+                }
+            }
+            // The values being loaded are not known yet, so none of them can be trusted
+            generations.values().forEach(generation -> generation.value++);
+        }
+    }
+
+    /**
+     * Do not cache the values being loaded, which may predate a change not tied to their key.
+     */
+    public void invalidateLoading() {
+        synchronized (entries) {
+            generations.values().forEach(generation -> generation.value++);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            generations.values().forEach(generation -> generation.value++);
+        }
+    }
+
+    private void bumpGeneration(K key) {
+        Generation generation = generations.get(key);
+        if (generation != null) {
+            generation.value++;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static class LruMap<K, V> extends LinkedHashMap<K, Entry<V>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LruMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private static class Generation {
+
+        private long value;
+
+        private int loads;
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+
+        private final long expirationTime;
+
+        private Entry(V value, long expirationTime) {
+            this.value = value;
+            this.expirationTime = expirationTime;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expirationTime;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.util.LinkedMultiValueMap;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+
+/**
+ * Constraints of a machine allocation, so that MAAS picks a matching machine in a single request.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@Getter(AccessLevel.PUBLIC)
+@ToString
+public class AllocationConstraints {
+
+    private Integer cpuCount;
+
+    private Integer mem;
+
+    private String arch;
+
+    private List<String> tags;
+
+    private List<String> notTags;
+
+    private String zone;
+
+    private List<String> notInZone;
+
+    private String storage;
+
+    private String interfaces;
+
+    private String pod;
+
+    private boolean dryRun;
+
+    public AllocationConstraints(Builder builder) {
+        cpuCount = builder.cpuCount;
+        mem = builder.mem;
+        arch = builder.arch;
+        tags = new ArrayList<>(builder.tags);
+        notTags = new ArrayList<>(builder.notTags);
+        zone = builder.zone;
+        notInZone = new ArrayList<>(builder.notInZone);
+        storage = builder.storage;
+        interfaces = builder.interfaces;
+        pod = builder.pod;
+        dryRun = builder.dryRun;
+    }
+
+    /**
+     * @return the form parts of the allocation request
+     */
+    public LinkedMultiValueMap<String, Object> toArgs() {
+        LinkedMultiValueMap<String, Object> parts = new LinkedMultiValueMap<String, Object>();
+        if (cpuCount != null) {
+            parts.add("cpu_count", cpuCount);
+        }
+        if (mem != null) {
+            parts.add("mem", mem);
+        }
+        if (arch != null) {
+            parts.add("arch", arch);
+        }
+        for (String tag : tags) {
+            parts.add("tags", tag);
+        }
+        for (String tag : notTags) {
+            parts.add("not_tags", tag);
+        }
+        if (zone != null) {
+            parts.add("zone", zone);
+        }
+        for (String excludedZone : notInZone) {
+            parts.add("not_in_zone", excludedZone);
+        }
+        if (storage != null) {
+            parts.add("storage", storage);
+        }
+        if (interfaces != null) {
+            parts.add("interfaces", interfaces);
+        }
+        if (pod != null) {
+            parts.add("pod", pod);
+        }
+        if (dryRun) {
+            parts.add("dry_run", true);
+        }
+        return parts;
+    }
+
+    public static class Builder {
+
+        private Integer cpuCount;
+
+        private Integer mem;
+
+        private String arch;
+
+        private List<String> tags = new ArrayList<>();
+
+        private List<String> notTags = new ArrayList<>();
+
+        private String zone;
+
+        private List<String> notInZone = new ArrayList<>();
+
+        private String storage;
+
+        private String interfaces;
+
+        private String pod;
+
+        private boolean dryRun = false;
+
+        /**
+         * Minimum number of CPUs.
+         */
+        public Builder cpuCount(int cpuCount) {
+            this.cpuCount = cpuCount;
+            return this;
+        }
+
+        /**
+         * Minimum amount of memory (MB).
+         */
+        public Builder mem(int mem) {
+            this.mem = mem;
+            return this;
+        }
+
+        public Builder arch(String arch) {
+            this.arch = arch;
+            return this;
+        }
+
+        /**
+         * The machine must have this tag (may be repeated).
+         */
+        public Builder tag(String tag) {
+            this.tags.add(tag);
+            return this;
+        }
+
+        /**
+         * The machine must not have this tag (may be repeated).
+         */
+        public Builder notTag(String tag) {
+            this.notTags.add(tag);
+            return this;
+        }
+
+        public Builder zone(String zone) {
+            this.zone = zone;
+            return this;
+        }
+
+        /**
+         * The machine must not be in this zone (may be repeated).
+         */
+        public Builder notInZone(String zone) {
+            this.notInZone.add(zone);
+            return this;
+        }
+
+        /**
+         * Storage constraints, e.g. <code>root:20(ssd),data:100</code> (sizes in GB, tags between parentheses).
+         */
+        public Builder storage(String storage) {
+            this.storage = storage;
+            return this;
+        }
+
+        /**
+         * Network interface constraints, e.g. <code>eth0:space=public;eth1:fabric=storage</code>.
+         */
+        public Builder interfaces(String interfaces) {
+            this.interfaces = interfaces;
+            return this;
+        }
+
+        /**
+         * Name of the pod the machine must belong to.
+         */
+        public Builder pod(String pod) {
+            this.pod = pod;
+            return this;
+        }
+
+        /**
+         * Only report the machine which would be allocated, without allocating it.
+         */
+        public Builder dryRun(boolean dryRun) {
+            this.dryRun = dryRun;
+            return this;
+        }
+
+        public AllocationConstraints build() {
+            return new AllocationConstraints(this);
+        }
+
+        public LinkedMultiValueMap<String, Object> buildAsArgs() {
+            return build().toArgs();
+        }
+    }
+}
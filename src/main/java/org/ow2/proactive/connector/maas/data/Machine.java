@@ -31,6 +31,7 @@ import java.util.List;
 import org.ow2.proactive.connector.maas.data.powertype.PowerType;
 import org.springframework.util.LinkedMultiValueMap;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -188,6 +189,14 @@ public class Machine {
         return this.systemId.equals(other.systemId);
     }
 
+    /**
+     * @return the status of the machine, or null if unknown
+     */
+    @JsonIgnore
+    public MachineStatus getMachineStatus() {
+        return MachineStatus.fromCode(status);
+    }
+
     public static class Builder {
 
         private String architecture;
@@ -0,0 +1,113 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.data;
+
+import java.util.Locale;
+
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+
+/**
+ * Server-side filters of the machine listing, sent as query parameters of <code>/machines/</code>.
+ * <p>
+ * Each constraint may be repeated: a machine matches a repeated constraint if it matches any of its values,
+ * except for tags where it must have all of them. Machines must match all the different constraints.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@Getter(AccessLevel.PUBLIC)
+@ToString
+public class MachineQuery {
+
+    private final MultiValueMap<String, String> parameters;
+
+    public MachineQuery(Builder builder) {
+        parameters = new LinkedMultiValueMap<>(builder.parameters);
+    }
+
+    public static class Builder {
+
+        private final MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+
+        public Builder zone(String zone) {
+            return add("zone", zone);
+        }
+
+        public Builder pool(String pool) {
+            return add("pool", pool);
+        }
+
+        public Builder status(MachineStatus status) {
+            return add("status", status != null ? status.name().toLowerCase(Locale.ROOT) : null);
+        }
+
+        public Builder arch(String arch) {
+            return add("arch", arch);
+        }
+
+        /**
+         * Only keep the machines having this tag.
+         */
+        public Builder tag(String tag) {
+            return add("tags", tag);
+        }
+
+        /**
+         * Exclude the machines having this tag.
+         */
+        public Builder notTag(String tag) {
+            return add("not_tags", tag);
+        }
+
+        /**
+         * Only keep the machines owned by this user.
+         */
+        public Builder owner(String owner) {
+            return add("owner", owner);
+        }
+
+        public Builder domain(String domain) {
+            return add("domain", domain);
+        }
+
+        private Builder add(String name, String value) {
+            if (value != null) {
+                parameters.add(name, value);
+            }
+            return this;
+        }
+
+        public MachineQuery build() {
+            return new MachineQuery(this);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+
+/**
+ * Status of a MAAS machine, as given by its <code>status</code> code.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@Getter(AccessLevel.PUBLIC)
+public enum MachineStatus {
+
+    NEW(0, false),
+    COMMISSIONING(1, false),
+    FAILED_COMMISSIONING(2, true),
+    MISSING(3, false),
+    READY(4, false),
+    RESERVED(5, false),
+    DEPLOYED(6, false),
+    RETIRED(7, false),
+    BROKEN(8, true),
+    DEPLOYING(9, false),
+    ALLOCATED(10, false),
+    FAILED_DEPLOYMENT(11, true),
+    RELEASING(12, false),
+    FAILED_RELEASING(13, true),
+    DISK_ERASING(14, false),
+    FAILED_DISK_ERASING(15, true),
+    RESCUE_MODE(16, false),
+    ENTERING_RESCUE_MODE(17, false),
+    FAILED_ENTERING_RESCUE_MODE(18, true),
+    EXITING_RESCUE_MODE(19, false),
+    FAILED_EXITING_RESCUE_MODE(20, true),
+    TESTING(21, false),
+    FAILED_TESTING(22, true);
+
+    private static final Map<Long, MachineStatus> BY_CODE = new HashMap<>();
+
+    static {
+        for (MachineStatus status : values()) {
+            BY_CODE.put(status.code, status);
+        }
+    }
+
+    private final long code;
+
+    /**
+     * Whether the status reports the failure of an operation (the status message usually tells why)
+     */
+    private final boolean failure;
+
+    MachineStatus(long code, boolean failure) {
+        this.code = code;
+        this.failure = failure;
+    }
+
+    /**
+     * @param code  The status code sent by MAAS
+     * @return      The matching status, or null if the code is unknown (e.g. added by a newer MAAS version)
+     */
+    public static MachineStatus fromCode(Long code) {
+        return code != null ? BY_CODE.get(code) : null;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.data;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+
+/**
+ * Lightweight projection of {@link Machine}.
+ * <p>
+ * Only the scalar fields needed by listing and polling are mapped: the nested arrays of the machine
+ * (block devices, interfaces, links...) are skipped by the parser without being decoded into objects.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@Getter(AccessLevel.PUBLIC)
+@ToString
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MachineSummary {
+
+    @JsonProperty("system_id")
+    private String systemId;
+
+    @JsonProperty("hostname")
+    private String hostname;
+
+    @JsonProperty("status")
+    private Long status;
+
+    @JsonProperty("status_name")
+    private String statusName;
+
+    @JsonProperty("status_message")
+    private String statusMessage;
+
+    @JsonProperty("cpu_count")
+    private Long cpuCount;
+
+    @JsonProperty("memory")
+    private Long memory;
+
+    @JsonProperty("zone")
+    private Zone zone;
+
+    @JsonProperty("tag_names")
+    private String[] tagNames;
+
+    /**
+     * @return the status of the machine, or null if unknown
+     */
+    @JsonIgnore
+    public MachineStatus getMachineStatus() {
+        return MachineStatus.fromCode(status);
+    }
+}
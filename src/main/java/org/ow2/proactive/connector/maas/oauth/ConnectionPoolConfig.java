@@ -0,0 +1,162 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.oauth;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+
+/**
+ * Sizing and lifecycle settings of the pooled keep-alive HTTP transport.
+ * <p>
+ * When provided to {@link OauthClientConfig}, MAAS requests are sent through a shared pool of persistent
+ * connections instead of opening a new {@link java.net.HttpURLConnection} (and TLS session) for each call.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@Getter(AccessLevel.PUBLIC)
+@ToString
+public class ConnectionPoolConfig {
+
+    private final int maxTotalConnections;
+
+    private final int maxConnectionsPerRoute;
+
+    private final long idleEvictionMillis;
+
+    private final long leaseTimeoutMillis;
+
+    private final long keepAliveMillis;
+
+    private final long connectTimeoutMillis;
+
+    private final long socketTimeoutMillis;
+
+    private final int ioThreads;
+
+    public ConnectionPoolConfig(Builder builder) {
+        maxTotalConnections = builder.maxTotalConnections;
+        maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+        idleEvictionMillis = builder.idleEvictionMillis;
+        leaseTimeoutMillis = builder.leaseTimeoutMillis;
+        keepAliveMillis = builder.keepAliveMillis;
+        connectTimeoutMillis = builder.connectTimeoutMillis;
+        socketTimeoutMillis = builder.socketTimeoutMillis;
+        ioThreads = builder.ioThreads;
+    }
+
+    public static ConnectionPoolConfig defaults() {
+        return new Builder().build();
+    }
+
+    public static class Builder {
+
+        private int maxTotalConnections = 200;
+
+        private int maxConnectionsPerRoute = 50;
+
+        private long idleEvictionMillis = TimeUnit.SECONDS.toMillis(30);
+
+        private long leaseTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+
+        private long keepAliveMillis = TimeUnit.SECONDS.toMillis(60);
+
+        private long connectTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+
+        private long socketTimeoutMillis = TimeUnit.MINUTES.toMillis(2);
+
+        private int ioThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Maximum number of connections kept open towards all MAAS servers.
+         */
+        public Builder maxTotalConnections(int maxTotalConnections) {
+            this.maxTotalConnections = maxTotalConnections;
+            return this;
+        }
+
+        /**
+         * Maximum number of connections kept open towards a single MAAS server (route).
+         */
+        public Builder maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+
+        /**
+         * Connections left unused for longer than this delay are closed by a background evictor.
+         */
+        public Builder idleEviction(long duration, TimeUnit unit) {
+            this.idleEvictionMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Maximum time to wait for a free connection when the pool is exhausted.
+         */
+        public Builder leaseTimeout(long duration, TimeUnit unit) {
+            this.leaseTimeoutMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Keep-alive duration applied when the server response does not provide one.
+         */
+        public Builder keepAlive(long duration, TimeUnit unit) {
+            this.keepAliveMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder connectTimeout(long duration, TimeUnit unit) {
+            this.connectTimeoutMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder socketTimeout(long duration, TimeUnit unit) {
+            this.socketTimeoutMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Number of I/O dispatcher threads shared by all in-flight requests of the non-blocking transport.
+         */
+        public Builder ioThreads(int ioThreads) {
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        public ConnectionPoolConfig build() {
+            if (maxTotalConnections <= 0 || maxConnectionsPerRoute <= 0 || ioThreads <= 0) {
+                throw new IllegalArgumentException("Connection pool sizes and I/O threads must be strictly positive");
+            }
+            return new ConnectionPoolConfig(this);
+        }
+    }
+}
@@ -28,18 +28,21 @@ package org.ow2.proactive.connector.maas.oauth;
 import java.io.IOException;
 
 import org.springframework.http.HttpRequest;
+import org.springframework.http.client.AsyncClientHttpRequestExecution;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.concurrent.ListenableFuture;
 
 
 /**
- * ClientHttpRequestInterceptor implementation that performs OAuth1 request signing before a request for a protected resource is executed.
+ * ClientHttpRequestInterceptor (and its asynchronous counterpart) implementation that performs OAuth1 request signing before a request for a protected resource is executed.
  *
  * @author ActiveEon Team
  * @since 10/01/17
  */
-public class OAuth1RequestInterceptor implements ClientHttpRequestInterceptor {
+public class OAuth1RequestInterceptor implements ClientHttpRequestInterceptor, AsyncClientHttpRequestInterceptor {
 
     private final String consumerKey;
 
@@ -71,6 +74,13 @@ public class OAuth1RequestInterceptor implements ClientHttpRequestInterceptor {
         return execution.execute(protectedResourceRequest, body);
     }
 
+    public ListenableFuture<ClientHttpResponse> intercept(final HttpRequest request, final byte[] body,
+            AsyncClientHttpRequestExecution execution) throws IOException {
+        HttpRequest protectedResourceRequest = new HttpRequestDecorator(request);
+        protectedResourceRequest.getHeaders().add("Authorization", getAuthorizationHeaderValue(request, body));
+        return execution.executeAsync(protectedResourceRequest, body);
+    }
+
     // internal helpers
 
     private String getAuthorizationHeaderValue(HttpRequest request, byte[] body) {
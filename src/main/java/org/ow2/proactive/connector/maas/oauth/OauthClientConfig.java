@@ -25,8 +25,15 @@
  */
 package org.ow2.proactive.connector.maas.oauth;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
@@ -35,10 +42,50 @@ import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.log4j.Logger;
+import org.springframework.http.client.AsyncClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.RestTemplate;
 
 
-public class OauthClientConfig {
+/**
+ * Build the OAuth1 RestTemplates used by the MAAS clients.
+ * <p>
+ * The pooled transports created by this configuration are owned by it: {@link #close()} releases their
+ * connections and background threads once the templates are no longer used.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class OauthClientConfig implements Closeable {
+
+    private final Logger logger = Logger.getLogger(OauthClientConfig.class);
+
+    private final List<Closeable> resources = new ArrayList<>();
 
     public RestTemplate restTemplate(String consumerKey, String consumerSecret, String accessKey, String accessSecret) {
         return restTemplate(consumerKey, consumerSecret, accessKey, accessSecret, false);
@@ -56,7 +103,181 @@ public class OauthClientConfig {
         return ProtectedResourceClientFactory.create(consumerKey, consumerSecret, accessKey, accessSecret);
     }
 
+    /**
+     * Build a RestTemplate backed by a pooled keep-alive transport sized by the provided configuration.
+     * Falls back to the default (one connection per request) transport if no pool configuration is given.
+     */
+    public RestTemplate restTemplate(String consumerKey, String consumerSecret, String accessKey, String accessSecret,
+            boolean ignoreHttpsCert, ConnectionPoolConfig poolConfig) {
+
+        if (poolConfig == null) {
+            return restTemplate(consumerKey, consumerSecret, accessKey, accessSecret, ignoreHttpsCert);
+        }
+
+        return ProtectedResourceClientFactory.create(consumerKey,
+                                                     consumerSecret,
+                                                     accessKey,
+                                                     accessSecret,
+                                                     pooledRequestFactory(poolConfig, ignoreHttpsCert));
+    }
+
+    private ClientHttpRequestFactory pooledRequestFactory(ConnectionPoolConfig poolConfig, boolean ignoreHttpsCert) {
+
+        // Bypass self signed HTTPS certificate on this client only, not JVM-wide
+        SSLConnectionSocketFactory sslSocketFactory;
+        SSLContext sslContext = ignoreHttpsCert ? getSSLContext() : null;
+        if (sslContext != null) {
+            sslSocketFactory = new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
+        } else {
+            sslSocketFactory = SSLConnectionSocketFactory.getSocketFactory();
+        }
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory> create()
+                                                                    .register("http",
+                                                                              PlainConnectionSocketFactory.getSocketFactory())
+                                                                    .register("https", sslSocketFactory)
+                                                                    .build();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry);
+        connectionManager.setMaxTotal(poolConfig.getMaxTotalConnections());
+        connectionManager.setDefaultMaxPerRoute(poolConfig.getMaxConnectionsPerRoute());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                                                   .setConnectionRequestTimeout((int) poolConfig.getLeaseTimeoutMillis())
+                                                   .setConnectTimeout((int) poolConfig.getConnectTimeoutMillis())
+                                                   .setSocketTimeout((int) poolConfig.getSocketTimeoutMillis())
+                                                   .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                                                    .setConnectionManager(connectionManager)
+                                                    .setDefaultRequestConfig(requestConfig)
+                                                    .setKeepAliveStrategy(keepAliveStrategy(poolConfig))
+                                                    .evictExpiredConnections()
+                                                    .evictIdleConnections(poolConfig.getIdleEvictionMillis(),
+                                                                          TimeUnit.MILLISECONDS)
+                                                    .build();
+        register(httpClient);
+        register(connectionManager);
+
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    /**
+     * Build an AsyncRestTemplate backed by a non-blocking transport: all in-flight requests share
+     * the pool of connections and the fixed set of I/O threads defined by the provided configuration.
+     */
+    public AsyncRestTemplate asyncRestTemplate(String consumerKey, String consumerSecret, String accessKey,
+            String accessSecret, boolean ignoreHttpsCert, ConnectionPoolConfig poolConfig) {
+
+        if (poolConfig == null) {
+            poolConfig = ConnectionPoolConfig.defaults();
+        }
+
+        return ProtectedResourceClientFactory.createAsync(consumerKey,
+                                                          consumerSecret,
+                                                          accessKey,
+                                                          accessSecret,
+                                                          asyncRequestFactory(poolConfig, ignoreHttpsCert));
+    }
+
+    private AsyncClientHttpRequestFactory asyncRequestFactory(ConnectionPoolConfig poolConfig,
+            boolean ignoreHttpsCert) {
+
+        SSLIOSessionStrategy sslSessionStrategy;
+        SSLContext sslContext = ignoreHttpsCert ? getSSLContext() : null;
+        if (sslContext != null) {
+            sslSessionStrategy = new SSLIOSessionStrategy(sslContext, NoopHostnameVerifier.INSTANCE);
+        } else {
+            sslSessionStrategy = SSLIOSessionStrategy.getDefaultStrategy();
+        }
+        Registry<SchemeIOSessionStrategy> registry = RegistryBuilder.<SchemeIOSessionStrategy> create()
+                                                                    .register("http", NoopIOSessionStrategy.INSTANCE)
+                                                                    .register("https", sslSessionStrategy)
+                                                                    .build();
+
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                                                         .setIoThreadCount(poolConfig.getIoThreads())
+                                                         .setConnectTimeout((int) poolConfig.getConnectTimeoutMillis())
+                                                         .setSoTimeout((int) poolConfig.getSocketTimeoutMillis())
+                                                         .build();
+
+        PoolingNHttpClientConnectionManager connectionManager;
+        try {
+            connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig),
+                                                                        registry);
+        } catch (IOReactorException e) {
+            throw new IllegalStateException("Unable to start the non-blocking HTTP transport", e);
+        }
+        connectionManager.setMaxTotal(poolConfig.getMaxTotalConnections());
+        connectionManager.setDefaultMaxPerRoute(poolConfig.getMaxConnectionsPerRoute());
+        scheduleIdleEviction(connectionManager, poolConfig);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                                                   .setConnectionRequestTimeout((int) poolConfig.getLeaseTimeoutMillis())
+                                                   .setConnectTimeout((int) poolConfig.getConnectTimeoutMillis())
+                                                   .setSocketTimeout((int) poolConfig.getSocketTimeoutMillis())
+                                                   .build();
+
+        CloseableHttpAsyncClient httpAsyncClient = HttpAsyncClients.custom()
+                                                                   .setConnectionManager(connectionManager)
+                                                                   .setDefaultRequestConfig(requestConfig)
+                                                                   .setKeepAliveStrategy(keepAliveStrategy(poolConfig))
+                                                                   .build();
+        register(httpAsyncClient);
+        register(connectionManager::shutdown);
+
+        return new HttpComponentsAsyncClientHttpRequestFactory(httpAsyncClient);
+    }
+
+    private void scheduleIdleEviction(PoolingNHttpClientConnectionManager connectionManager,
+            ConnectionPoolConfig poolConfig) {
+        // The async client builder has no built-in evictor, so run one on a daemon thread
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MAAS async connection evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        register(evictor::shutdownNow);
+        long period = poolConfig.getIdleEvictionMillis();
+        evictor.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(period, TimeUnit.MILLISECONDS);
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void register(Closeable resource) {
+        resources.add(resource);
+    }
+
+    /**
+     * Close the pooled transports (connections and eviction threads) created by this configuration.
+     * The RestTemplates built on top of them cannot be used anymore afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        for (Closeable resource : resources) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close HTTP transport resource: " + resource, e);
+            }
+        }
+        resources.clear();
+    }
+
+    private ConnectionKeepAliveStrategy keepAliveStrategy(ConnectionPoolConfig poolConfig) {
+        return (response, context) -> {
+            // Honor the Keep-Alive header sent by the server, if any
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? keepAlive : poolConfig.getKeepAliveMillis();
+        };
+    }
+
     private SSLSocketFactory getSSLSocketFactory() {
+        SSLContext sc = getSSLContext();
+        return sc != null ? sc.getSocketFactory() : null;
+    }
+
+    private SSLContext getSSLContext() {
 
         // Create a trust manager that does not validate certificate chains
         TrustManager[] trustAllCerts = new TrustManager[] { new X509TrustManager() {
@@ -76,7 +297,7 @@ public class OauthClientConfig {
         try {
             sc = SSLContext.getInstance("TLS");
             sc.init(null, trustAllCerts, new SecureRandom());
-            return sc.getSocketFactory();
+            return sc;
         } catch (Exception e) {
             e.printStackTrace();
             return null;
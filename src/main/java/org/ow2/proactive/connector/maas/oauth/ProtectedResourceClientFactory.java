@@ -27,8 +27,12 @@ package org.ow2.proactive.connector.maas.oauth;
 
 import java.util.Arrays;
 
+import org.springframework.http.client.AsyncClientHttpRequestFactory;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.RestTemplate;
 
 
@@ -58,7 +62,20 @@ public class ProtectedResourceClientFactory {
      */
     public static RestTemplate create(String consumerKey, String consumerSecret, String accessToken,
             String accessTokenSecret) {
-        RestTemplate client = new RestTemplate(new SimpleClientHttpRequestFactory());
+        return create(consumerKey,
+                      consumerSecret,
+                      accessToken,
+                      accessTokenSecret,
+                      new SimpleClientHttpRequestFactory());
+    }
+
+    /**
+     * Constructs a RestTemplate on top of the provided transport (e.g. a pooled keep-alive client)
+     * that adds the OAuth1 Authorization header to each request before it is executed.
+     */
+    public static RestTemplate create(String consumerKey, String consumerSecret, String accessToken,
+            String accessTokenSecret, ClientHttpRequestFactory requestFactory) {
+        RestTemplate client = new RestTemplate(requestFactory);
 
         // favored
         client.setInterceptors(Arrays.asList(new ClientHttpRequestInterceptor[] { new OAuth1RequestInterceptor(consumerKey,
@@ -68,4 +85,20 @@ public class ProtectedResourceClientFactory {
 
         return client;
     }
+
+    /**
+     * Constructs an AsyncRestTemplate on top of the provided non-blocking transport
+     * that adds the OAuth1 Authorization header to each request before it is executed.
+     */
+    public static AsyncRestTemplate createAsync(String consumerKey, String consumerSecret, String accessToken,
+            String accessTokenSecret, AsyncClientHttpRequestFactory requestFactory) {
+        AsyncRestTemplate client = new AsyncRestTemplate(requestFactory);
+
+        client.setInterceptors(Arrays.asList(new AsyncClientHttpRequestInterceptor[] { new OAuth1RequestInterceptor(consumerKey,
+                                                                                                                     consumerSecret,
+                                                                                                                     accessToken,
+                                                                                                                     accessTokenSecret) }));
+
+        return client;
+    }
 }
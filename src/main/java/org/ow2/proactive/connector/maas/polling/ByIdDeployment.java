@@ -0,0 +1,74 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.ow2.proactive.connector.maas.MaasClient;
+import org.ow2.proactive.connector.maas.batch.TagMembershipBatcher;
+import org.ow2.proactive.connector.maas.data.Machine;
+import org.ow2.proactive.connector.maas.data.Tag;
+
+
+/**
+ * Deployment of a given machine, started through
+ * {@link MaasClientPollingService#deployMachineById(String, String, java.util.List, java.time.Duration)}.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+class ByIdDeployment extends Deployment {
+
+    private String systemId;
+
+    private String userData;
+
+    ByIdDeployment(MaasClient maasClient, MachineStatusPoller statusPoller, Executor executor,
+            TagMembershipBatcher tagBatcher, String systemId, String userData, List<Tag> tags) {
+        super(maasClient, statusPoller, executor, tagBatcher, tags);
+        this.systemId = systemId;
+        this.userData = userData;
+    }
+
+    /**
+     * The machine was chosen by the caller, who may still need it: leave it as it is.
+     */
+    @Override
+    protected CleanupPolicy getDefaultCleanupPolicy() {
+        return CleanupPolicy.none();
+    }
+
+    @Override
+    protected Machine allocate() {
+        return maasClient.allocateMachineById(systemId);
+    }
+
+    @Override
+    protected String getUserData(String systemId) {
+        return userData;
+    }
+}
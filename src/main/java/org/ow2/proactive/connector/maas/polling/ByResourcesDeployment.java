@@ -0,0 +1,86 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.ow2.proactive.connector.maas.MaasClient;
+import org.ow2.proactive.connector.maas.batch.TagMembershipBatcher;
+import org.ow2.proactive.connector.maas.data.Machine;
+import org.ow2.proactive.connector.maas.data.Tag;
+
+
+/**
+ * Deployment of any machine matching the requested resources, started through
+ * {@link MaasClientPollingService#deployMachineByResources(ResourceProfile, String, java.util.List,
+ * java.time.Duration)}.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+class ByResourcesDeployment extends Deployment {
+
+    private ResourceProfile profile;
+
+    private String userData;
+
+    private static final CharSequence INSTANCE_ID_PATTERN = "<INSTANCE_ID>";
+
+    ByResourcesDeployment(MaasClient maasClient, MachineStatusPoller statusPoller, Executor executor,
+            TagMembershipBatcher tagBatcher, ResourceProfile profile, String userData, List<Tag> tags) {
+        super(maasClient, statusPoller, executor, tagBatcher, tags);
+        this.profile = profile;
+        this.userData = userData;
+    }
+
+    @Override
+    protected ResourceProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Any matching machine was picked by this deployment: release it so that it is not leaked.
+     */
+    @Override
+    protected CleanupPolicy getDefaultCleanupPolicy() {
+        return CleanupPolicy.defaults();
+    }
+
+    @Override
+    protected Machine allocate() {
+        return maasClient.allocateMachineByResources(profile.getCpu(),
+                                                     profile.getRam(),
+                                                     profile.getArch(),
+                                                     profile.getZone());
+    }
+
+    @Override
+    protected String getUserData(String systemId) {
+        // Replace the connector IaaS instance ID if provided
+        return userData != null ? userData.replace(INSTANCE_ID_PATTERN, systemId) : null;
+    }
+}
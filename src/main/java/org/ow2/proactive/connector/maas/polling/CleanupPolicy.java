@@ -0,0 +1,168 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+
+/**
+ * What to do with the machine of a deployment which is cancelled (e.g. on timeout) or fails, so that it is
+ * not leaked: release it (optionally erasing its disks) or power it off. Cleanups run asynchronously and
+ * are retried with an exponential delay.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@Getter(AccessLevel.PUBLIC)
+@ToString
+public class CleanupPolicy {
+
+    public enum Action {
+        NONE,
+        RELEASE,
+        POWER_OFF
+    }
+
+    private final Action action;
+
+    private final String comment;
+
+    private final boolean eraseDisk;
+
+    private final boolean secureErase;
+
+    private final boolean quickErase;
+
+    private final String stopMode;
+
+    private final int maxAttempts;
+
+    private final long retryDelayMillis;
+
+    public CleanupPolicy(Builder builder) {
+        action = builder.action;
+        comment = builder.comment;
+        eraseDisk = builder.eraseDisk;
+        secureErase = builder.secureErase;
+        quickErase = builder.quickErase;
+        stopMode = builder.stopMode;
+        maxAttempts = builder.maxAttempts;
+        retryDelayMillis = builder.retryDelayMillis;
+    }
+
+    /**
+     * @return the default policy: release without erasing, up to 3 attempts
+     */
+    public static CleanupPolicy defaults() {
+        return new Builder().build();
+    }
+
+    public static CleanupPolicy none() {
+        return new Builder().none().build();
+    }
+
+    public static class Builder {
+
+        private Action action = Action.RELEASE;
+
+        private String comment = "Released after a failed or cancelled deployment";
+
+        private boolean eraseDisk = false;
+
+        private boolean secureErase = false;
+
+        private boolean quickErase = false;
+
+        private String stopMode = "hard";
+
+        private int maxAttempts = 3;
+
+        private long retryDelayMillis = TimeUnit.SECONDS.toMillis(10);
+
+        /**
+         * Leave the machine as it is.
+         */
+        public Builder none() {
+            this.action = Action.NONE;
+            return this;
+        }
+
+        /**
+         * Release the machine without erasing its disks.
+         */
+        public Builder release() {
+            return release(false, false, false);
+        }
+
+        /**
+         * Release the machine, erasing its disks as requested.
+         */
+        public Builder release(boolean eraseDisk, boolean secureErase, boolean quickErase) {
+            this.action = Action.RELEASE;
+            this.eraseDisk = eraseDisk;
+            this.secureErase = secureErase;
+            this.quickErase = quickErase;
+            return this;
+        }
+
+        /**
+         * Keep the machine allocated but power it off.
+         *
+         * @param stopMode  "hard" or "soft"
+         */
+        public Builder powerOff(String stopMode) {
+            this.action = Action.POWER_OFF;
+            this.stopMode = stopMode;
+            return this;
+        }
+
+        /**
+         * Comment recorded in the machine event log.
+         */
+        public Builder comment(String comment) {
+            this.comment = comment;
+            return this;
+        }
+
+        /**
+         * @param maxAttempts   The number of attempts before giving up
+         * @param retryDelay    The delay before the first retry, doubled at each following retry
+         */
+        public Builder retries(int maxAttempts, long retryDelay, TimeUnit unit) {
+            this.maxAttempts = maxAttempts;
+            this.retryDelayMillis = unit.toMillis(retryDelay);
+            return this;
+        }
+
+        public CleanupPolicy build() {
+            return new CleanupPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+import org.ow2.proactive.connector.maas.MaasClient;
+import org.ow2.proactive.connector.maas.batch.TagMembershipBatcher;
+import org.ow2.proactive.connector.maas.data.Machine;
+import org.ow2.proactive.connector.maas.data.MachineStatus;
+import org.ow2.proactive.connector.maas.data.MachineSummary;
+import org.ow2.proactive.connector.maas.data.Tag;
+
+
+/**
+ * Deployment pipeline shared by all deployment flavors: allocate, wait for allocation, deploy, and wait for
+ * deployment. Tagging does not need the OS, so it runs alongside once the machine is allocated, and the
+ * deployment completes when both the machine is deployed and tagged. Tagging is best effort: a tagging failure
+ * is logged but does not fail the deployment of the machine.
+ * <p>
+ * Blocking MAAS calls run on the provided executor while status waits are delegated to the shared
+ * {@link MachineStatusPoller}, so no thread is parked while a machine is allocating or deploying.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+abstract class Deployment {
+
+    private final Logger logger = Logger.getLogger(Deployment.class);
+
+    protected final MaasClient maasClient;
+
+    private final MachineStatusPoller statusPoller;
+
+    private final Executor executor;
+
+    private final TagMembershipBatcher tagBatcher;
+
+    private final List<Tag> tags;
+
+    private final CompletableFuture<Machine> result = new CompletableFuture<>();
+
+    private final Set<CompletableFuture<?>> pendingStages = ConcurrentHashMap.newKeySet();
+
+    private volatile String allocatedSystemId;
+
+    private volatile Consumer<String> abandonedMachineHandler;
+
+    private final AtomicBoolean abandoned = new AtomicBoolean(false);
+
+    private volatile DeploymentMetrics metrics;
+
+    private volatile String zone;
+
+    Deployment(MaasClient maasClient, MachineStatusPoller statusPoller, Executor executor,
+            TagMembershipBatcher tagBatcher, List<Tag> tags) {
+        this.maasClient = maasClient;
+        this.statusPoller = statusPoller;
+        this.executor = executor;
+        this.tagBatcher = tagBatcher;
+        this.tags = tags;
+
+        // Stop watching the machine as soon as the deployment is over (e.g. cancelled on timeout)
+        result.whenComplete((machine, throwable) -> {
+            pendingStages.forEach(stage -> stage.cancel(false));
+            if (throwable != null || machine == null) {
+                abandon();
+            }
+        });
+    }
+
+    /**
+     * Set the handler notified with the system ID of the allocated machine when the deployment is cancelled
+     * or fails, so that the machine is not leaked.
+     */
+    void onAbandonedMachine(Consumer<String> handler) {
+        this.abandonedMachineHandler = handler;
+    }
+
+    /**
+     * Set the metrics in which the duration of each step is recorded.
+     */
+    void setMetrics(DeploymentMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the requested resources, used to break the metrics down (null if not deploying by resources)
+     */
+    protected ResourceProfile getProfile() {
+        return null;
+    }
+
+    /**
+     * @return the cleanup policy applied to the machine when the deployment is cancelled or fails, unless the
+     *         polling service overrides it
+     */
+    protected abstract CleanupPolicy getDefaultCleanupPolicy();
+
+    /**
+     * Acquire/Allocate the machine to deploy.
+     *
+     * @return the allocated machine, or null if the allocation failed
+     */
+    protected abstract Machine allocate();
+
+    /**
+     * @return the user data to send to the allocated machine at deployment
+     */
+    protected abstract String getUserData(String systemId);
+
+    /**
+     * Start the deployment pipeline.
+     *
+     * @return a future completed with the deployed machine (or null if a MAAS operation failed)
+     */
+    CompletableFuture<Machine> start() {
+        long start = System.nanoTime();
+        stage(CompletableFuture.supplyAsync(this::allocateMachine, executor)).thenCompose(allocatedMachine -> {
+            if (allocatedMachine == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (allocatedMachine.getMachineStatus() == MachineStatus.DEPLOYED) {
+                // Taken from a pool of deployed machines: only tag it
+                return tryToPutTags(allocatedMachine.getSystemId()).thenApply(tagged -> allocatedMachine);
+            }
+            return deploy(allocatedMachine.getSystemId());
+        }).whenComplete((machine, throwable) -> {
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                if (machine != null) {
+                    record(DeploymentStep.TOTAL, start);
+                }
+                result.complete(machine);
+            }
+        });
+        return result;
+    }
+
+    private Machine allocateMachine() {
+        long start = System.nanoTime();
+        Machine machine = allocate();
+        if (machine != null) {
+            allocatedSystemId = machine.getSystemId();
+            zone = machine.getZone() != null ? machine.getZone().getName() : null;
+            record(DeploymentStep.ALLOCATE, start);
+            // Cancelled while allocating: the allocation stage result is ignored
+            if (result.isCompletedExceptionally()) {
+                abandon();
+            }
+        }
+        return machine;
+    }
+
+    private void abandon() {
+        String systemId = allocatedSystemId;
+        Consumer<String> handler = abandonedMachineHandler;
+        if (systemId != null && handler != null && abandoned.compareAndSet(false, true)) {
+            handler.accept(systemId);
+        }
+    }
+
+    private CompletableFuture<Machine> deploy(String systemId) {
+        CompletableFuture<Void> tagged = tryToPutTags(systemId);
+
+        CompletableFuture<MachineSummary> allocated = statusPoller.waitForStatus(systemId, DeploymentPhase.ALLOCATING);
+        CompletableFuture<Machine> deployed = timed(DeploymentStep.WAIT_ALLOCATED,
+                                                    stage(allocated)).thenApplyAsync(machine -> deployMachine(systemId),
+                                                                                     executor)
+                                                                     .thenCompose(this::waitForDeployed);
+
+        return deployed.thenCombine(tagged, (deployedMachine, done) -> deployedMachine);
+    }
+
+    private Machine deployMachine(String systemId) {
+        long start = System.nanoTime();
+        Machine machine = maasClient.deployMachine(systemId, getUserData(systemId));
+        if (machine != null) {
+            record(DeploymentStep.DEPLOY, start);
+        }
+        return machine;
+    }
+
+    private CompletableFuture<Machine> waitForDeployed(Machine deployedMachine) {
+        if (deployedMachine == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<MachineSummary> deployed = statusPoller.waitForStatus(deployedMachine.getSystemId(),
+                                                                                DeploymentPhase.DEPLOYING);
+        return timed(DeploymentStep.WAIT_DEPLOYED, stage(deployed)).thenApply(machine -> deployedMachine);
+    }
+
+    /**
+     * Put the tags on the machine, logging instead of failing if they cannot be put: the machine is deployed
+     * all the same and must be returned to the caller rather than abandoned.
+     */
+    private CompletableFuture<Void> tryToPutTags(String systemId) {
+        return timed(DeploymentStep.TAG, putTags(systemId)).exceptionally(throwable -> {
+            if (!result.isDone()) {
+                logger.warn("Unable to tag machine " + systemId + " with " + tags, throwable);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Put the tags on the machine, the memberships being batched with the ones of concurrent deployments.
+     */
+    private CompletableFuture<Void> putTags(String systemId) {
+        CompletableFuture<?>[] tagged = tags.stream()
+                                            .map(tag -> putTag(tag, systemId))
+                                            .toArray(CompletableFuture[]::new);
+        return stage(CompletableFuture.allOf(tagged));
+    }
+
+    private CompletableFuture<Boolean> putTag(Tag tag, String systemId) {
+        return CompletableFuture.supplyAsync(() -> maasClient.createTagIfNotExists(tag.getName(), tag.getComment()),
+                                             executor)
+                                .thenCompose(created -> tagBatcher.add(tag.getName(), systemId));
+    }
+
+    /**
+     * Record the duration of the stage in the metrics if it succeeds.
+     */
+    private <T> CompletableFuture<T> timed(DeploymentStep step, CompletableFuture<T> stage) {
+        long start = System.nanoTime();
+        return stage.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                record(step, start);
+            }
+        });
+    }
+
+    private void record(DeploymentStep step, long startNanos) {
+        DeploymentMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.record(getProfile(), zone, step, System.nanoTime() - startNanos);
+        }
+    }
+
+    private <T> CompletableFuture<T> stage(CompletableFuture<T> stage) {
+        pendingStages.add(stage);
+        stage.whenComplete((value, throwable) -> pendingStages.remove(stage));
+        if (result.isDone()) {
+            stage.cancel(false);
+        }
+        return stage;
+    }
+}
@@ -34,9 +34,16 @@ import org.ow2.proactive.connector.maas.data.Tag;
 
 
 /**
+ * Blocking deployment of a given machine, kept for compatibility: it runs the deployment pipeline of a
+ * short-lived {@link MaasClientPollingService} and waits for its result.
+ *
+ * @deprecated use {@link MaasClientPollingService#deployMachineById(String, String, List, java.time.Duration)}
+ *             which shares the status polling, tag batching and deadlines between deployments
+ *
  * @author ActiveEon Team
  * @since 17/01/17
  */
+@Deprecated
 public class DeploymentById implements Callable<Machine> {
 
     private MaasClient maasClient;
@@ -56,31 +63,11 @@ public class DeploymentById implements Callable<Machine> {
 
     @Override
     public Machine call() throws Exception {
-
-        // Acquire/Allocate the new machine
-        Machine selectedMachine = maasClient.allocateMachineById(systemId);
-        if (selectedMachine == null) {
-            return null;
+        MaasClientPollingService pollingService = new MaasClientPollingService(maasClient, 1);
+        try {
+            return pollingService.deployMachine(systemId, userData, tags).get();
+        } finally {
+            pollingService.shutdown();
         }
-        do {
-            Thread.sleep(MaasClientPollingService.POLLING_INTERVAL);
-        } while (maasClient.getMachineById(systemId).getStatus() != Machine.ALLOCATED);
-
-        // Put tags
-        tags.forEach(tag -> {
-            maasClient.createTagIfNotExists(tag.getName(), tag.getComment());
-            maasClient.addTagToMachines(tag.getName(), systemId);
-        });
-
-        // Deploy OS
-        selectedMachine = maasClient.deployMachine(systemId, userData);
-        if (selectedMachine == null) {
-            return null;
-        }
-        do {
-            Thread.sleep(MaasClientPollingService.POLLING_INTERVAL);
-        } while (maasClient.getMachineById(systemId).getStatus() != Machine.DEPLOYED);
-
-        return selectedMachine;
     }
 }
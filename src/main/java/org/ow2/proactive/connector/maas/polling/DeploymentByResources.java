@@ -34,12 +34,19 @@ import org.ow2.proactive.connector.maas.data.Tag;
 
 
 /**
+ * Blocking deployment of any machine matching the requested resources, kept for compatibility: it runs the
+ * deployment pipeline of a short-lived {@link MaasClientPollingService} and waits for its result.
+ *
+ * @deprecated use {@link MaasClientPollingService#deployMachineByResources(ResourceProfile, String, List,
+ *             java.time.Duration)} which shares the status polling, tag batching, deadlines and warm pool between
+ *             deployments
+ *
  * @author ActiveEon Team
  * @since 17/01/17
  */
+@Deprecated
 public class DeploymentByResources implements Callable<Machine> {
 
-    // Poll every X sec
     private MaasClient maasClient;
 
     private int cpu, ram;
@@ -48,8 +55,6 @@ public class DeploymentByResources implements Callable<Machine> {
 
     private List<Tag> tags;
 
-    private static final CharSequence INSTANCE_ID_PATTERN = "<INSTANCE_ID>";
-
     public DeploymentByResources(MaasClient maasClient, int cpu, int ram, String userData, List<Tag> tags) {
         this.maasClient = maasClient;
         this.cpu = cpu;
@@ -60,32 +65,11 @@ public class DeploymentByResources implements Callable<Machine> {
 
     @Override
     public Machine call() throws Exception {
-
-        // Acquire/Allocate the new machine
-        Machine selectedMachine = maasClient.allocateMachineByResources(cpu, ram);
-        if (selectedMachine == null) {
-            return null;
+        MaasClientPollingService pollingService = new MaasClientPollingService(maasClient, 1);
+        try {
+            return pollingService.deployMachine(cpu, ram, userData, tags).get();
+        } finally {
+            pollingService.shutdown();
         }
-        String systemId = selectedMachine.getSystemId();
-        do {
-            Thread.sleep(MaasClientPollingService.POLLING_INTERVAL);
-        } while (maasClient.getMachineById(systemId).getStatus() != Machine.ALLOCATED);
-
-        // Replace the connector IaaS instance ID if provided
-        userData = userData.replace(INSTANCE_ID_PATTERN, systemId);
-
-        // Put tags
-        tags.forEach(tag -> {
-            maasClient.createTagIfNotExists(tag.getName(), tag.getComment());
-            maasClient.addTagToMachines(tag.getName(), systemId);
-        });
-
-        // Deploy OS
-        selectedMachine = maasClient.deployMachine(systemId, userData);
-        do {
-            Thread.sleep(MaasClientPollingService.POLLING_INTERVAL);
-        } while (maasClient.getMachineById(systemId).getStatus() != Machine.DEPLOYED);
-
-        return selectedMachine;
     }
 }
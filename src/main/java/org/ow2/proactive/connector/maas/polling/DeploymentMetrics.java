@@ -0,0 +1,124 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+
+/**
+ * Latency histograms (in milliseconds) of the steps of successful deployments, broken down by resource
+ * profile and zone.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class DeploymentMetrics {
+
+    private static final long HIGHEST_TRACKABLE_MILLIS = TimeUnit.HOURS.toMillis(2);
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<Key, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Identifies a histogram.
+     */
+    @Getter(AccessLevel.PUBLIC)
+    @ToString
+    @EqualsAndHashCode
+    public static class Key {
+
+        /**
+         * The requested resources, or null for deployments of a given machine
+         */
+        private final ResourceProfile profile;
+
+        /**
+         * The zone of the deployed machine, or null if unknown
+         */
+        private final String zone;
+
+        private final DeploymentStep step;
+
+        public Key(ResourceProfile profile, String zone, DeploymentStep step) {
+            this.profile = profile;
+            this.zone = zone;
+            this.step = step;
+        }
+    }
+
+    void record(ResourceProfile profile, String zone, DeploymentStep step, long durationNanos) {
+        Histogram histogram = histograms.computeIfAbsent(new Key(profile, zone, step),
+                                                         key -> new ConcurrentHistogram(HIGHEST_TRACKABLE_MILLIS,
+                                                                                        SIGNIFICANT_DIGITS));
+        histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMillis(durationNanos), HIGHEST_TRACKABLE_MILLIS));
+    }
+
+    /**
+     * @return a copy of the histogram of the step for the profile and zone, or null if nothing was recorded
+     */
+    public Histogram getHistogram(ResourceProfile profile, String zone, DeploymentStep step) {
+        Histogram histogram = histograms.get(new Key(profile, zone, step));
+        return histogram != null ? histogram.copy() : null;
+    }
+
+    /**
+     * @return a copy of all the histograms
+     */
+    public Map<Key, Histogram> getHistograms() {
+        Map<Key, Histogram> copies = new HashMap<>();
+        histograms.forEach((key, histogram) -> copies.put(key, histogram.copy()));
+        return copies;
+    }
+
+    /**
+     * @return a copy of the histogram of the step, merged over all profiles and zones
+     */
+    public Histogram getHistogram(DeploymentStep step) {
+        Histogram merged = new Histogram(HIGHEST_TRACKABLE_MILLIS, SIGNIFICANT_DIGITS);
+        histograms.forEach((key, histogram) -> {
+            if (key.getStep() == step) {
+                merged.add(histogram);
+            }
+        });
+        return merged;
+    }
+
+    public void reset() {
+        histograms.clear();
+    }
+}
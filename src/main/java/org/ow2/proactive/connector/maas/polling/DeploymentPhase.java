@@ -0,0 +1,106 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.ow2.proactive.connector.maas.data.MachineStatus;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+
+/**
+ * Phases of a deployment during which the status of the machine is polled.
+ * <p>
+ * Each phase is a step of the deployment state machine: it completes when the machine reaches the target
+ * status, goes on while the machine is in one of the pending statuses, and fails on any failure status
+ * (see {@link MachineStatus#isFailure()}) or any other unexpected status (e.g. released by someone else).
+ * The pending statuses are ordered: the machine may only stay in its status or move forward towards the
+ * target status, so that going back (e.g. a deployment aborted back to {@link MachineStatus#ALLOCATED}) also
+ * fails the phase.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@Getter(AccessLevel.PUBLIC)
+public enum DeploymentPhase {
+
+    /**
+     * Waiting for the machine to be allocated (usually seconds)
+     */
+    ALLOCATING(MachineStatus.ALLOCATED, MachineStatus.READY),
+
+    /**
+     * Waiting for the OS to be deployed on the machine (usually minutes)
+     */
+    DEPLOYING(MachineStatus.DEPLOYED, MachineStatus.ALLOCATED, MachineStatus.DEPLOYING);
+
+    private final MachineStatus targetStatus;
+
+    private final Set<MachineStatus> pendingStatuses;
+
+    /**
+     * The pending statuses in the order the machine goes through them, followed by the target status
+     */
+    private final List<MachineStatus> progression;
+
+    DeploymentPhase(MachineStatus targetStatus, MachineStatus... pendingStatuses) {
+        this.targetStatus = targetStatus;
+        this.pendingStatuses = EnumSet.noneOf(MachineStatus.class);
+        this.pendingStatuses.addAll(Arrays.asList(pendingStatuses));
+        List<MachineStatus> progression = new ArrayList<>(Arrays.asList(pendingStatuses));
+        progression.add(targetStatus);
+        this.progression = Collections.unmodifiableList(progression);
+    }
+
+    /**
+     * @return true if the deployment cannot complete from the provided status
+     */
+    public boolean isFailedBy(MachineStatus status) {
+        if (status.isFailure()) {
+            return true;
+        }
+        return status != targetStatus && !pendingStatuses.contains(status);
+    }
+
+    /**
+     * @param from  The last status seen during the phase, or null if the machine was not seen yet
+     * @param to    The status the machine has now
+     * @return      true if the machine may go from one status to the other during the phase
+     */
+    public boolean isLegalTransition(MachineStatus from, MachineStatus to) {
+        if (isFailedBy(to)) {
+            return false;
+        }
+        return from == null || progression.indexOf(to) >= progression.indexOf(from);
+    }
+}
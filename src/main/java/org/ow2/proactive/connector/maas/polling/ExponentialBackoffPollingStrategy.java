@@ -0,0 +1,63 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.ToString;
+
+
+/**
+ * Poll quickly first, then less and less often: the delay is multiplied at each attempt until it reaches
+ * its maximum.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@ToString
+public class ExponentialBackoffPollingStrategy implements PollingStrategy {
+
+    private final long initialDelayMillis;
+
+    private final long maxDelayMillis;
+
+    private final double multiplier;
+
+    public ExponentialBackoffPollingStrategy(long initialDelay, long maxDelay, double multiplier, TimeUnit unit) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("The backoff multiplier must be greater than or equal to 1");
+        }
+        this.initialDelayMillis = unit.toMillis(initialDelay);
+        this.maxDelayMillis = unit.toMillis(maxDelay);
+        this.multiplier = multiplier;
+    }
+
+    @Override
+    public long nextDelayMillis(int attempt) {
+        double delay = initialDelayMillis * Math.pow(multiplier, attempt);
+        return (long) Math.min(delay, maxDelayMillis);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.ToString;
+
+
+/**
+ * Randomize the delays of another strategy by up to the given ratio, in both directions, so that polls of
+ * machines started together spread out instead of hitting MAAS in synchronized waves.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@ToString
+public class JitteredPollingStrategy implements PollingStrategy {
+
+    private final PollingStrategy strategy;
+
+    private final double jitterRatio;
+
+    /**
+     * @param strategy      The strategy whose delays are randomized
+     * @param jitterRatio   The maximum relative variation of the delays, between 0 and 1 (e.g. 0.2 for +/-20%)
+     */
+    public JitteredPollingStrategy(PollingStrategy strategy, double jitterRatio) {
+        if (jitterRatio < 0 || jitterRatio > 1) {
+            throw new IllegalArgumentException("The jitter ratio must be between 0 and 1");
+        }
+        this.strategy = strategy;
+        this.jitterRatio = jitterRatio;
+    }
+
+    @Override
+    public long nextDelayMillis(int attempt) {
+        long delay = strategy.nextDelayMillis(attempt);
+        double variation = jitterRatio * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(0, Math.round(delay * (1 + variation)));
+    }
+}
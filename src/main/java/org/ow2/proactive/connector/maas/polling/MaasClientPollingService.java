@@ -25,14 +25,16 @@
  */
 package org.ow2.proactive.connector.maas.polling;
 
+import java.time.Duration;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.ow2.proactive.connector.maas.MaasClient;
+import org.ow2.proactive.connector.maas.batch.TagMembershipBatcher;
 import org.ow2.proactive.connector.maas.data.Machine;
 import org.ow2.proactive.connector.maas.data.Tag;
 
@@ -45,15 +47,88 @@ public class MaasClientPollingService {
 
     private final static int DEFAULT_TIMEOUT = 15;
 
-    final static int POLLING_INTERVAL = 5 * 1000;
+    private final static int TAG_BATCH_WINDOW = 500;
+
+    private final static int TAG_BATCH_MAX_SIZE = 100;
+
+    private final static int DEADLINE_TICK = 100;
+
+    private final static int DEADLINE_WHEEL_SIZE = 512;
+
+    private final static int DEFAULT_MAX_CONCURRENT_REFILLS = 4;
 
     private MaasClient maasClient;
 
     private ScheduledExecutorService executor;
 
+    private MachineStatusPoller statusPoller;
+
+    private TagMembershipBatcher tagBatcher;
+
+    private HashedWheelTimer deadlineTimer;
+
+    private WarmPoolManager warmPool;
+
+    private MachineCleaner machineCleaner;
+
+    private volatile CleanupPolicy cleanupPolicy;
+
+    private final DeploymentMetrics metrics = new DeploymentMetrics();
+
     public MaasClientPollingService(MaasClient maasClient, int nbThreads) {
+        this(maasClient, nbThreads, PollingConfig.defaults());
+    }
+
+    /**
+     * @param pollingConfig The polling strategy of each deployment phase
+     */
+    public MaasClientPollingService(MaasClient maasClient, int nbThreads, PollingConfig pollingConfig) {
         this.maasClient = maasClient;
         executor = Executors.newScheduledThreadPool(nbThreads);
+        statusPoller = new MachineStatusPoller(maasClient, pollingConfig);
+        tagBatcher = new TagMembershipBatcher(maasClient, TAG_BATCH_WINDOW, TimeUnit.MILLISECONDS, TAG_BATCH_MAX_SIZE);
+        deadlineTimer = new HashedWheelTimer(DEADLINE_TICK, TimeUnit.MILLISECONDS, DEADLINE_WHEEL_SIZE);
+        machineCleaner = new MachineCleaner(maasClient, executor);
+        warmPool = new WarmPoolManager(maasClient,
+                                       statusPoller,
+                                       executor,
+                                       tagBatcher,
+                                       machineCleaner,
+                                       deadlineTimer,
+                                       Duration.ofMinutes(DEFAULT_TIMEOUT),
+                                       DEFAULT_MAX_CONCURRENT_REFILLS);
+    }
+
+    /**
+     * Set what to do with the machines of deployments which are cancelled (e.g. on timeout) or fail.
+     * By default, machines deployed by ID are left as they are, since the caller chose them, while machines
+     * deployed by resources are released.
+     *
+     * @param cleanupPolicy The policy applied to all deployments, or null to restore the defaults
+     */
+    public void setCleanupPolicy(CleanupPolicy cleanupPolicy) {
+        this.cleanupPolicy = cleanupPolicy;
+    }
+
+    /**
+     * @return the policy applied to all deployments, or null if each deployment type uses its default
+     */
+    public CleanupPolicy getCleanupPolicy() {
+        return cleanupPolicy;
+    }
+
+    /**
+     * @return the latency histograms of the deployment steps, by resource profile and zone
+     */
+    public DeploymentMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the warm pool serving deployments by resources, empty until target sizes are set
+     */
+    public WarmPoolManager getWarmPool() {
+        return warmPool;
     }
 
     public Future<Machine> deployMachine(String systemId, String userData, List<Tag> tags) {
@@ -65,16 +140,19 @@ public class MaasClientPollingService {
     }
 
     public Future<Machine> deployMachineById(String systemId, String userData, List<Tag> tags, int timeoutMinutes) {
-        Callable<Machine> deploymentPolling = new DeploymentById(maasClient, systemId, userData, tags);
+        return deployMachineById(systemId, userData, tags, Duration.ofMinutes(timeoutMinutes));
+    }
 
-        Future<Machine> future = executor.submit(deploymentPolling);
-        executor.schedule(() -> {
-            if (!future.isDone()) {
-                future.cancel(true);
-            }
-        }, timeoutMinutes, TimeUnit.MINUTES);
+    public Future<Machine> deployMachineById(String systemId, String userData, List<Tag> tags, Duration timeout) {
+        Deployment deployment = new ByIdDeployment(maasClient,
+                                                   statusPoller,
+                                                   executor,
+                                                   tagBatcher,
+                                                   systemId,
+                                                   userData,
+                                                   tags);
 
-        return future;
+        return start(deployment, timeout);
     }
 
     public Future<Machine> deployMachineByResources(int cpu, int ram, String userData, List<Tag> tags) {
@@ -83,19 +161,66 @@ public class MaasClientPollingService {
 
     public Future<Machine> deployMachineByResources(int cpu, int ram, String userData, List<Tag> tags,
             int timeoutMinutes) {
-        Callable<Machine> deploymentPolling = new DeploymentByResources(maasClient, cpu, ram, userData, tags);
+        return deployMachineByResources(cpu, ram, userData, tags, Duration.ofMinutes(timeoutMinutes));
+    }
 
-        Future<Machine> future = executor.submit(deploymentPolling);
-        executor.schedule(() -> {
-            if (!future.isDone()) {
-                future.cancel(true);
-            }
-        }, timeoutMinutes, TimeUnit.MINUTES);
+    public Future<Machine> deployMachineByResources(int cpu, int ram, String userData, List<Tag> tags,
+            Duration timeout) {
+        return deployMachineByResources(new ResourceProfile(cpu, ram), userData, tags, timeout);
+    }
+
+    /**
+     * Deploy a machine matching the profile, taken from the warm pool if one is available. Deployed pooled
+     * machines have no user data, so they are only taken if no user data is provided.
+     */
+    public Future<Machine> deployMachineByResources(ResourceProfile profile, String userData, List<Tag> tags,
+            Duration timeout) {
+        Machine pooledMachine = warmPool.acquire(profile, userData == null);
+        Deployment deployment;
+        if (pooledMachine != null) {
+            deployment = new PooledDeployment(maasClient,
+                                              statusPoller,
+                                              executor,
+                                              tagBatcher,
+                                              profile,
+                                              pooledMachine,
+                                              userData,
+                                              tags);
+        } else {
+            deployment = new ByResourcesDeployment(maasClient,
+                                                   statusPoller,
+                                                   executor,
+                                                   tagBatcher,
+                                                   profile,
+                                                   userData,
+                                                   tags);
+        }
+
+        return start(deployment, timeout);
+    }
 
+    /**
+     * Start the deployment and cancel it if it is not over before the timeout. The machine of a cancelled or
+     * failed deployment is cleaned up according to the cleanup policy.
+     */
+    private Future<Machine> start(Deployment deployment, Duration timeout) {
+        CleanupPolicy policy = cleanupPolicy != null ? cleanupPolicy : deployment.getDefaultCleanupPolicy();
+        deployment.onAbandonedMachine(systemId -> machineCleaner.cleanup(systemId, policy));
+        deployment.setMetrics(metrics);
+        CompletableFuture<Machine> future = deployment.start();
+        HashedWheelTimer.Timeout deadline = deadlineTimer.newTimeout(() -> future.cancel(true),
+                                                                     timeout.toMillis(),
+                                                                     TimeUnit.MILLISECONDS);
+        // Free the deadline as soon as the deployment is over
+        future.whenComplete((machine, throwable) -> deadline.cancel());
         return future;
     }
 
     public void shutdown() {
+        warmPool.shutdown();
+        statusPoller.shutdown();
+        tagBatcher.shutdown();
+        deadlineTimer.stop();
         executor.shutdownNow();
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.ow2.proactive.connector.maas.MaasClient;
+
+
+/**
+ * Applies the {@link CleanupPolicy} to the machines of abandoned deployments, retrying failed attempts.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+class MachineCleaner {
+
+    private final Logger logger = Logger.getLogger(MachineCleaner.class);
+
+    private final MaasClient maasClient;
+
+    private final ScheduledExecutorService executor;
+
+    MachineCleaner(MaasClient maasClient, ScheduledExecutorService executor) {
+        this.maasClient = maasClient;
+        this.executor = executor;
+    }
+
+    void cleanup(String systemId, CleanupPolicy policy) {
+        if (policy.getAction() == CleanupPolicy.Action.NONE) {
+            return;
+        }
+        try {
+            executor.execute(() -> attempt(systemId, policy, 1));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Unable to clean up machine " + systemId + ": the polling service is shut down");
+        }
+    }
+
+    private void attempt(String systemId, CleanupPolicy policy, int attempt) {
+        boolean done;
+        try {
+            done = apply(systemId, policy);
+        } catch (RuntimeException e) {
+            logger.warn("Cleanup attempt " + attempt + " of machine " + systemId + " failed", e);
+            done = false;
+        }
+
+        if (done) {
+            logger.info("Machine " + systemId + " cleaned up (" + policy.getAction() + ")");
+        } else if (attempt >= policy.getMaxAttempts()) {
+            logger.error("Unable to clean up machine " + systemId + " after " + attempt + " attempts");
+        } else {
+            long delay = policy.getRetryDelayMillis() << (attempt - 1);
+            try {
+                executor.schedule(() -> attempt(systemId, policy, attempt + 1), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Unable to retry the cleanup of machine " + systemId +
+                            ": the polling service is shut down");
+            }
+        }
+    }
+
+    private boolean apply(String systemId, CleanupPolicy policy) {
+        switch (policy.getAction()) {
+            case RELEASE:
+                return maasClient.releaseMachineById(systemId,
+                                                     policy.getComment(),
+                                                     policy.isEraseDisk(),
+                                                     policy.isSecureErase(),
+                                                     policy.isQuickErase());
+            case POWER_OFF:
+                return maasClient.powerOffMachine(systemId, policy.getStopMode(), policy.getComment());
+            default:
+                return true;
+        }
+    }
+}
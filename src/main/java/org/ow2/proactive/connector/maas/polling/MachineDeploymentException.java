@@ -0,0 +1,66 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import org.ow2.proactive.connector.maas.data.MachineStatus;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+
+/**
+ * Failure of a deployment, raised as soon as the machine reaches a status from which the deployment
+ * cannot complete (e.g. failed deployment, broken or released).
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@Getter(AccessLevel.PUBLIC)
+public class MachineDeploymentException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String systemId;
+
+    private final DeploymentPhase phase;
+
+    private final MachineStatus status;
+
+    /**
+     * The status message of the machine given by MAAS, which usually tells the failure reason
+     */
+    private final String statusMessage;
+
+    public MachineDeploymentException(String systemId, DeploymentPhase phase, MachineStatus status,
+            String statusMessage) {
+        super("Machine " + systemId + " reached status " + status + " while " + phase.name().toLowerCase() +
+              (statusMessage != null && !statusMessage.isEmpty() ? ": " + statusMessage : ""));
+        this.systemId = systemId;
+        this.phase = phase;
+        this.status = status;
+        this.statusMessage = statusMessage;
+    }
+}
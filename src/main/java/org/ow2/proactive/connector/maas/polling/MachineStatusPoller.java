@@ -0,0 +1,184 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+import org.ow2.proactive.connector.maas.MaasClient;
+import org.ow2.proactive.connector.maas.data.MachineStatus;
+import org.ow2.proactive.connector.maas.data.MachineSummary;
+
+
+/**
+ * Single scheduler tracking the status of every in-flight deployment.
+ * <p>
+ * Each machine has its own next poll time, given by the {@link PollingStrategy} of its deployment phase.
+ * Each tick fetches the status of all machines due for a poll with one list request and completes the
+ * futures of the machines that reached their expected status. The load on MAAS therefore grows with the
+ * number of ticks instead of the number of deployments, and no thread is parked per deployment.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+class MachineStatusPoller {
+
+    /**
+     * Resolution of the poll times: due machines are looked for at this rate, without calling MAAS if none
+     */
+    private static final long TICK_MILLIS = 250;
+
+    private final Logger logger = Logger.getLogger(MachineStatusPoller.class);
+
+    private final MaasClient maasClient;
+
+    private final PollingConfig pollingConfig;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ConcurrentLinkedQueue<StatusWaiter> waiters = new ConcurrentLinkedQueue<>();
+
+    MachineStatusPoller(MaasClient maasClient, PollingConfig pollingConfig) {
+        this.maasClient = maasClient;
+        this.pollingConfig = pollingConfig;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MAAS machine status poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register the machine to be watched until it reaches the target status of the deployment phase.
+     * Cancelling the returned future stops watching the machine.
+     *
+     * @param systemId  The system ID of the machine to watch
+     * @param phase     The deployment phase, which gives the target status and the polling strategy
+     * @return          A future completed with the machine summary once it has the target status, or completed
+     *                  exceptionally with a {@link MachineDeploymentException} as soon as the machine reaches a
+     *                  status failing the phase
+     */
+    CompletableFuture<MachineSummary> waitForStatus(String systemId, DeploymentPhase phase) {
+        StatusWaiter waiter = new StatusWaiter(systemId, phase, pollingConfig.getStrategy(phase));
+        waiters.add(waiter);
+        return waiter.future;
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+        waiters.forEach(waiter -> waiter.future.cancel(false));
+        waiters.clear();
+    }
+
+    private void poll() {
+        try {
+            waiters.removeIf(waiter -> waiter.future.isDone());
+            long now = System.currentTimeMillis();
+            Map<String, List<StatusWaiter>> waitersBySystemId;
+            waitersBySystemId = waiters.stream()
+                                       .filter(waiter -> waiter.nextPollTime <= now)
+                                       .collect(Collectors.groupingBy(waiter -> waiter.systemId));
+            if (waitersBySystemId.isEmpty()) {
+                return;
+            }
+            // Whatever the outcome, the next poll of these machines follows their strategy
+            waitersBySystemId.values().stream().flatMap(List::stream).forEach(StatusWaiter::scheduleNextPoll);
+
+            // Only the status is needed: skip decoding of the full machine objects
+            List<MachineSummary> machines = maasClient.getMachineSummariesByIds(waitersBySystemId.keySet());
+            if (machines == null) {
+                logger.warn("Unable to retrieve the status of " + waitersBySystemId.size() +
+                            " machines, retrying later");
+                return;
+            }
+
+            for (MachineSummary machine : machines) {
+                List<StatusWaiter> machineWaiters = waitersBySystemId.get(machine.getSystemId());
+                MachineStatus status = machine.getMachineStatus();
+                if (machineWaiters == null || status == null) {
+                    continue;
+                }
+                for (StatusWaiter waiter : machineWaiters) {
+                    MachineStatus lastStatus = waiter.lastStatus;
+                    waiter.lastStatus = status;
+                    if (!waiter.phase.isLegalTransition(lastStatus, status)) {
+                        // No need to wait for the timeout: the machine will not reach the target status by itself
+                        waiter.future.completeExceptionally(new MachineDeploymentException(waiter.systemId,
+                                                                                           waiter.phase,
+                                                                                           status,
+                                                                                           machine.getStatusMessage()));
+                        waiters.remove(waiter);
+                    } else if (status == waiter.phase.getTargetStatus()) {
+                        waiter.future.complete(machine);
+                        waiters.remove(waiter);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Never let an exception kill the periodic task
+            logger.error("Machine status polling failed", e);
+        }
+    }
+
+    private static class StatusWaiter {
+
+        private final String systemId;
+
+        private final DeploymentPhase phase;
+
+        private final PollingStrategy strategy;
+
+        private final CompletableFuture<MachineSummary> future = new CompletableFuture<>();
+
+        private int attempts = 0;
+
+        /**
+         * Last status seen by a poll, to reject unexpected transitions
+         */
+        private MachineStatus lastStatus;
+
+        private volatile long nextPollTime;
+
+        private StatusWaiter(String systemId, DeploymentPhase phase, PollingStrategy strategy) {
+            this.systemId = systemId;
+            this.phase = phase;
+            this.strategy = strategy;
+            scheduleNextPoll();
+        }
+
+        private void scheduleNextPoll() {
+            nextPollTime = System.currentTimeMillis() + strategy.nextDelayMillis(attempts++);
+        }
+    }
+}
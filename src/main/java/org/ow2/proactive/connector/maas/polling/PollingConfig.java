@@ -0,0 +1,107 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lombok.ToString;
+
+
+/**
+ * Polling strategy of each deployment phase.
+ * <p>
+ * By default, allocations are polled every second backing off to 5 seconds, and OS deployments every
+ * 5 seconds backing off to 30 seconds, both with a 20% jitter.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+@ToString
+public class PollingConfig {
+
+    private static final double DEFAULT_JITTER_RATIO = 0.2;
+
+    private static final double DEFAULT_BACKOFF_MULTIPLIER = 1.5;
+
+    private final Map<DeploymentPhase, PollingStrategy> strategies;
+
+    public PollingConfig(Builder builder) {
+        strategies = new EnumMap<>(builder.strategies);
+    }
+
+    public static PollingConfig defaults() {
+        return new Builder().build();
+    }
+
+    public PollingStrategy getStrategy(DeploymentPhase phase) {
+        return strategies.get(phase);
+    }
+
+    public static class Builder {
+
+        private final Map<DeploymentPhase, PollingStrategy> strategies = new EnumMap<>(DeploymentPhase.class);
+
+        public Builder() {
+            strategies.put(DeploymentPhase.ALLOCATING,
+                           new JitteredPollingStrategy(new ExponentialBackoffPollingStrategy(1,
+                                                                                             5,
+                                                                                             DEFAULT_BACKOFF_MULTIPLIER,
+                                                                                             TimeUnit.SECONDS),
+                                                       DEFAULT_JITTER_RATIO));
+            strategies.put(DeploymentPhase.DEPLOYING,
+                           new JitteredPollingStrategy(new ExponentialBackoffPollingStrategy(5,
+                                                                                             30,
+                                                                                             DEFAULT_BACKOFF_MULTIPLIER,
+                                                                                             TimeUnit.SECONDS),
+                                                       DEFAULT_JITTER_RATIO));
+        }
+
+        /**
+         * Strategy used while waiting for machines to be allocated.
+         */
+        public Builder allocating(PollingStrategy strategy) {
+            return strategy(DeploymentPhase.ALLOCATING, strategy);
+        }
+
+        /**
+         * Strategy used while waiting for machines to be deployed.
+         */
+        public Builder deploying(PollingStrategy strategy) {
+            return strategy(DeploymentPhase.DEPLOYING, strategy);
+        }
+
+        public Builder strategy(DeploymentPhase phase, PollingStrategy strategy) {
+            strategies.put(phase, strategy);
+            return this;
+        }
+
+        public PollingConfig build() {
+            return new PollingConfig(this);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+import org.ow2.proactive.connector.maas.MaasClient;
+import org.ow2.proactive.connector.maas.batch.TagMembershipBatcher;
+import org.ow2.proactive.connector.maas.data.Machine;
+import org.ow2.proactive.connector.maas.data.MachineStatus;
+import org.ow2.proactive.connector.maas.data.MachineSummary;
+
+
+/**
+ * Keeps machines of given resource profiles allocated (or deployed) in advance, so that deployment requests
+ * matching a profile are served without waiting for the allocation (or the OS deployment).
+ * <p>
+ * Each time a machine is taken, a replacement is prepared in the background. The number of machines being
+ * prepared at the same time is bounded for all profiles, and a profile whose refill fails (e.g. no matching
+ * machine left) is retried after a delay. A preparation which is not over before the refill timeout is
+ * cancelled, and a machine whose preparation fails or is cancelled once it is allocated is released.
+ * <p>
+ * Deployed machines are prepared without user data, so they only serve deployments without user data.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class WarmPoolManager {
+
+    private static final long REFILL_RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private static final CleanupPolicy REFILL_CLEANUP_POLICY;
+
+    static {
+        REFILL_CLEANUP_POLICY = new CleanupPolicy.Builder().release()
+                                                           .comment("Released after a failed warm pool refill")
+                                                           .build();
+    }
+
+    private final Logger logger = Logger.getLogger(WarmPoolManager.class);
+
+    private final MaasClient maasClient;
+
+    private final MachineStatusPoller statusPoller;
+
+    private final ScheduledExecutorService executor;
+
+    private final TagMembershipBatcher tagBatcher;
+
+    private final MachineCleaner machineCleaner;
+
+    private final HashedWheelTimer deadlineTimer;
+
+    private volatile Duration refillTimeout;
+
+    private final Map<ResourceProfile, Pool> pools = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong refills = new AtomicLong();
+
+    private final AtomicLong refillMillis = new AtomicLong();
+
+    private int maxConcurrentRefills;
+
+    private int refilling = 0;
+
+    private boolean shutdown = false;
+
+    WarmPoolManager(MaasClient maasClient, MachineStatusPoller statusPoller, ScheduledExecutorService executor,
+            TagMembershipBatcher tagBatcher, MachineCleaner machineCleaner, HashedWheelTimer deadlineTimer,
+            Duration refillTimeout, int maxConcurrentRefills) {
+        this.maasClient = maasClient;
+        this.statusPoller = statusPoller;
+        this.executor = executor;
+        this.tagBatcher = tagBatcher;
+        this.machineCleaner = machineCleaner;
+        this.deadlineTimer = deadlineTimer;
+        this.refillTimeout = refillTimeout;
+        this.maxConcurrentRefills = maxConcurrentRefills;
+    }
+
+    /**
+     * Set the number of machines of the profile to keep ready. A size of 0 stops refilling the pool of the
+     * profile, the machines already in the pool are still served.
+     */
+    public synchronized void setTargetSize(ResourceProfile profile, int targetSize, WarmPoolMode mode) {
+        Pool pool = pools.computeIfAbsent(profile, Pool::new);
+        pool.targetSize = targetSize;
+        pool.mode = mode;
+        pool.updateFillLag();
+        refill();
+    }
+
+    /**
+     * Set the maximum number of machines being prepared at the same time, for all profiles.
+     */
+    public synchronized void setMaxConcurrentRefills(int maxConcurrentRefills) {
+        this.maxConcurrentRefills = maxConcurrentRefills;
+        refill();
+    }
+
+    /**
+     * Set how long a machine may take to be prepared before its preparation is cancelled, applied to the
+     * refills started afterwards.
+     */
+    public void setRefillTimeout(Duration refillTimeout) {
+        this.refillTimeout = refillTimeout;
+    }
+
+    /**
+     * @return the number of machines of the profile ready to be served
+     */
+    public synchronized int getAvailable(ResourceProfile profile) {
+        Pool pool = pools.get(profile);
+        return pool != null ? pool.machines.size() : 0;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the ratio of requests for a pooled profile served from the pool
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return how long the pool of the profile has been below its target size, in milliseconds (0 if full)
+     */
+    public synchronized long getFillLagMillis(ResourceProfile profile) {
+        Pool pool = pools.get(profile);
+        return pool != null ? pool.getFillLagMillis() : 0;
+    }
+
+    /**
+     * @return the largest fill lag of all profiles, in milliseconds
+     */
+    public synchronized long getFillLagMillis() {
+        return pools.values().stream().mapToLong(Pool::getFillLagMillis).max().orElse(0);
+    }
+
+    /**
+     * @return the average time needed to prepare a pooled machine, in milliseconds
+     */
+    public long getAverageRefillMillis() {
+        long refillCount = refills.get();
+        return refillCount == 0 ? 0 : refillMillis.get() / refillCount;
+    }
+
+    /**
+     * Take a machine of the profile from the pool, and start preparing its replacement.
+     *
+     * @param deployedAllowed   Whether a deployed machine can be served, i.e. no specific user data is needed
+     * @return a pooled machine, or null if none is available
+     */
+    synchronized Machine acquire(ResourceProfile profile, boolean deployedAllowed) {
+        Pool pool = pools.get(profile);
+        if (pool == null) {
+            return null;
+        }
+        Machine machine = pool.take(deployedAllowed);
+        (machine != null ? hits : misses).incrementAndGet();
+        pool.updateFillLag();
+        refill();
+        return machine;
+    }
+
+    /**
+     * Stop refilling and release the pooled machines.
+     */
+    void shutdown() {
+        List<String> systemIds = new ArrayList<>();
+        synchronized (this) {
+            shutdown = true;
+            pools.values().forEach(pool -> {
+                pool.machines.forEach(machine -> systemIds.add(machine.getSystemId()));
+                pool.machines.clear();
+            });
+        }
+        if (!systemIds.isEmpty()) {
+            maasClient.releaseMachines(systemIds, "Released with the warm pool", false, false, false);
+        }
+    }
+
+    private synchronized void refill() {
+        if (shutdown) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Pool pool : pools.values()) {
+            while (pool.getDeficit() > 0 && refilling < maxConcurrentRefills && pool.retryTime <= now) {
+                pool.refilling++;
+                refilling++;
+                startRefill(pool);
+            }
+        }
+    }
+
+    private void startRefill(Pool pool) {
+        long start = System.currentTimeMillis();
+        // System ID of the machine being prepared, released if its preparation does not complete
+        AtomicReference<String> preparedSystemId = new AtomicReference<>();
+        CompletableFuture<Machine> prepared;
+        if (pool.mode == WarmPoolMode.DEPLOYED) {
+            Deployment deployment = new ByResourcesDeployment(maasClient,
+                                                              statusPoller,
+                                                              executor,
+                                                              tagBatcher,
+                                                              pool.profile,
+                                                              null,
+                                                              Collections.emptyList());
+            deployment.onAbandonedMachine(this::releaseFailedMachine);
+            prepared = deployment.start();
+        } else {
+            prepared = prepareAllocated(pool.profile, preparedSystemId);
+        }
+        // Do not hold the refill slot forever, e.g. for a machine stuck while allocating or deploying
+        HashedWheelTimer.Timeout deadline = deadlineTimer.newTimeout(() -> prepared.cancel(true),
+                                                                     refillTimeout.toMillis(),
+                                                                     TimeUnit.MILLISECONDS);
+        // Refresh the machine so that it is served with its up-to-date status
+        prepared.thenApplyAsync(machine -> {
+            if (machine == null) {
+                return null;
+            }
+            preparedSystemId.set(machine.getSystemId());
+            return maasClient.getMachineById(machine.getSystemId());
+        }, executor).whenComplete((machine, throwable) -> {
+            deadline.cancel();
+            onRefilled(pool, machine, throwable, start);
+            if (machine == null) {
+                releasePreparedMachine(preparedSystemId);
+            }
+        });
+    }
+
+    /**
+     * Allocate a machine of the profile and wait for its allocation. Cancelling the returned future stops
+     * watching the machine, which is then released.
+     */
+    private CompletableFuture<Machine> prepareAllocated(ResourceProfile profile,
+            AtomicReference<String> preparedSystemId) {
+        CompletableFuture<Machine> prepared = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> allocate(profile), executor).thenCompose(machine -> {
+            if (machine == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            preparedSystemId.set(machine.getSystemId());
+            if (prepared.isDone()) {
+                // Cancelled while allocating
+                releasePreparedMachine(preparedSystemId);
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<MachineSummary> allocated = statusPoller.waitForStatus(machine.getSystemId(),
+                                                                                     DeploymentPhase.ALLOCATING);
+            prepared.whenComplete((preparedMachine, throwable) -> allocated.cancel(false));
+            return allocated.thenApply(summary -> machine);
+        }).whenComplete((machine, throwable) -> {
+            if (throwable != null) {
+                prepared.completeExceptionally(throwable);
+            } else {
+                prepared.complete(machine);
+            }
+        });
+        return prepared;
+    }
+
+    private Machine allocate(ResourceProfile profile) {
+        return maasClient.allocateMachineByResources(profile.getCpu(),
+                                                     profile.getRam(),
+                                                     profile.getArch(),
+                                                     profile.getZone());
+    }
+
+    private void onRefilled(Pool pool, Machine machine, Throwable throwable, long start) {
+        boolean release;
+        synchronized (this) {
+            pool.refilling--;
+            refilling--;
+            release = shutdown && machine != null;
+            if (machine != null && !shutdown) {
+                pool.machines.add(machine);
+                refills.incrementAndGet();
+                refillMillis.addAndGet(System.currentTimeMillis() - start);
+            } else if (machine == null) {
+                logger.warn("Unable to prepare a machine for the warm pool of " + pool.profile +
+                            ", retrying in " + REFILL_RETRY_DELAY + " ms", throwable);
+                pool.retryTime = System.currentTimeMillis() + REFILL_RETRY_DELAY;
+                if (!shutdown) {
+                    executor.schedule(this::refill, REFILL_RETRY_DELAY, TimeUnit.MILLISECONDS);
+                }
+            }
+            pool.updateFillLag();
+            refill();
+        }
+        if (release) {
+            maasClient.releaseMachineById(machine.getSystemId());
+        }
+    }
+
+    /**
+     * Release the prepared machine, if any and not released yet.
+     */
+    private void releasePreparedMachine(AtomicReference<String> preparedSystemId) {
+        String systemId = preparedSystemId.getAndSet(null);
+        if (systemId != null) {
+            releaseFailedMachine(systemId);
+        }
+    }
+
+    /**
+     * Do not keep allocated a machine whose preparation failed or was cancelled.
+     */
+    private void releaseFailedMachine(String systemId) {
+        logger.warn("Releasing machine " + systemId + " whose preparation for the warm pool failed");
+        machineCleaner.cleanup(systemId, REFILL_CLEANUP_POLICY);
+    }
+
+    private static class Pool {
+
+        private final ResourceProfile profile;
+
+        private final Queue<Machine> machines = new ArrayDeque<>();
+
+        private int targetSize;
+
+        private WarmPoolMode mode;
+
+        private int refilling = 0;
+
+        private long belowTargetSince = 0;
+
+        private long retryTime = 0;
+
+        private Pool(ResourceProfile profile) {
+            this.profile = profile;
+        }
+
+        /**
+         * Take the oldest machine, skipping the deployed ones if not allowed.
+         */
+        private Machine take(boolean deployedAllowed) {
+            for (Iterator<Machine> iterator = machines.iterator(); iterator.hasNext();) {
+                Machine machine = iterator.next();
+                if (deployedAllowed || machine.getMachineStatus() != MachineStatus.DEPLOYED) {
+                    iterator.remove();
+                    return machine;
+                }
+            }
+            return null;
+        }
+
+        private int getDeficit() {
+            return targetSize - machines.size() - refilling;
+        }
+
+        private long getFillLagMillis() {
+            return belowTargetSince == 0 ? 0 : System.currentTimeMillis() - belowTargetSince;
+        }
+
+        private void updateFillLag() {
+            if (machines.size() >= targetSize) {
+                belowTargetSince = 0;
+            } else if (belowTargetSince == 0) {
+                belowTargetSince = System.currentTimeMillis();
+            }
+        }
+    }
+}
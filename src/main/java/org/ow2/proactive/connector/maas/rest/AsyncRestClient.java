@@ -0,0 +1,165 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.rest;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.RestClientException;
+
+
+/**
+ * Non-blocking counterpart of {@link RestClient}.
+ * <p>
+ * Requests are handed to the underlying I/O reactor and the returned futures are completed from its
+ * threads, so no caller thread is parked while waiting for the MAAS server.
+ * Errors are reported the same way as {@link RestClient} does: through the response status code.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class AsyncRestClient {
+
+    private final AsyncRestTemplate restTemplate;
+
+    private final String apiUrl;
+
+    public AsyncRestClient(AsyncRestTemplate restTemplate, String apiUrl) {
+
+        this.restTemplate = restTemplate;
+        this.restTemplate.setErrorHandler(new RestClientErrorHandler());
+        this.apiUrl = apiUrl;
+    }
+
+    public <T> CompletableFuture<ResponseEntity<T>> deleteRequestWithArgs(Class<T> valueType, String resourceUrl,
+            Map<String, String> args) {
+        HttpEntity<String> httpEntity = RequestHeaders.JSON_ENTITY;
+        try {
+            return toCompletableFuture(restTemplate.exchange(apiUrl + resourceUrl,
+                                                             HttpMethod.DELETE,
+                                                             httpEntity,
+                                                             ManagedTypes.get(valueType),
+                                                             args));
+        } catch (RestClientException e) {
+            return CompletableFuture.completedFuture(errorResponse(e));
+        }
+    }
+
+    public <T> CompletableFuture<ResponseEntity<T>> postRequest(Class<T> valueType, String resourceUrl,
+            MultiValueMap<String, Object> parts) {
+        HttpEntity<MultiValueMap<String, Object>> httpEntity = RequestHeaders.multipartEntity(parts);
+        try {
+            return toCompletableFuture(restTemplate.exchange(apiUrl + resourceUrl,
+                                                             HttpMethod.POST,
+                                                             httpEntity,
+                                                             ManagedTypes.get(valueType)));
+        } catch (RestClientException e) {
+            return CompletableFuture.completedFuture(errorResponse(e));
+        }
+    }
+
+    public <T> CompletableFuture<ResponseEntity<T>> postRequestWithArgs(Class<T> valueType, String resourceUrl,
+            MultiValueMap<String, Object> parts, Map<String, String> args) {
+        HttpEntity<MultiValueMap<String, Object>> httpEntity = RequestHeaders.multipartEntity(parts);
+        try {
+            return toCompletableFuture(restTemplate.exchange(apiUrl + resourceUrl,
+                                                             HttpMethod.POST,
+                                                             httpEntity,
+                                                             ManagedTypes.get(valueType),
+                                                             args));
+        } catch (RestClientException e) {
+            return CompletableFuture.completedFuture(errorResponse(e));
+        }
+    }
+
+    public <T> CompletableFuture<ResponseEntity<T>> getRequest(Class<T> valueType, String resourceUrl) {
+        HttpEntity<String> httpEntity = RequestHeaders.JSON_ENTITY;
+        try {
+            return toCompletableFuture(restTemplate.exchange(apiUrl + resourceUrl,
+                                                             HttpMethod.GET,
+                                                             httpEntity,
+                                                             ManagedTypes.get(valueType)));
+        } catch (RestClientException e) {
+            return CompletableFuture.completedFuture(errorResponse(e));
+        }
+    }
+
+    public <T> CompletableFuture<ResponseEntity<T>> getRequestWithArgs(Class<T> valueType, String resourceUrl,
+            Map<String, String> args) {
+        HttpEntity<String> httpEntity = RequestHeaders.JSON_ENTITY;
+        try {
+            return toCompletableFuture(restTemplate.exchange(apiUrl + resourceUrl,
+                                                             HttpMethod.GET,
+                                                             httpEntity,
+                                                             ManagedTypes.get(valueType),
+                                                             args));
+        } catch (RestClientException e) {
+            return CompletableFuture.completedFuture(errorResponse(e));
+        }
+    }
+
+    private <T> CompletableFuture<ResponseEntity<T>>
+            toCompletableFuture(ListenableFuture<ResponseEntity<T>> listenableFuture) {
+        CompletableFuture<ResponseEntity<T>> completableFuture = new CompletableFuture<ResponseEntity<T>>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                listenableFuture.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        listenableFuture.addCallback(new ListenableFutureCallback<ResponseEntity<T>>() {
+            @Override
+            public void onSuccess(ResponseEntity<T> result) {
+                completableFuture.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable ex) {
+                // Same contract as the blocking client: decoding/transport errors become an error status
+                if (ex instanceof RestClientException) {
+                    completableFuture.complete(errorResponse((RestClientException) ex));
+                } else {
+                    completableFuture.completeExceptionally(ex);
+                }
+            }
+        });
+        return completableFuture;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ResponseEntity<T> errorResponse(RestClientException e) {
+        return new ResponseEntity<T>((T) e.getMostSpecificCause().getMessage(), HttpStatus.EXPECTATION_FAILED);
+    }
+
+}
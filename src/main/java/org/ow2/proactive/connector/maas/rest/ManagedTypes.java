@@ -0,0 +1,84 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.rest;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ow2.proactive.connector.maas.data.CommissioningScript;
+import org.ow2.proactive.connector.maas.data.MaasVersion;
+import org.ow2.proactive.connector.maas.data.Machine;
+import org.ow2.proactive.connector.maas.data.MachineSummary;
+import org.ow2.proactive.connector.maas.data.Tag;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ByteArrayResource;
+
+
+/**
+ * Response types that can be decoded by the synchronous and asynchronous REST clients.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+final class ManagedTypes {
+
+    private static final Map<Class, ParameterizedTypeReference> TYPES_MANAGED = populateManagedTypes();
+
+    private ManagedTypes() {
+    }
+
+    static <T> ParameterizedTypeReference<T> get(Class<T> valueType) {
+        return TYPES_MANAGED.get(valueType);
+    }
+
+    private static Map<Class, ParameterizedTypeReference> populateManagedTypes() {
+        HashMap<Class, ParameterizedTypeReference> typesManaged = new HashMap<>();
+        typesManaged.put(MaasVersion.class, new ParameterizedTypeReference<MaasVersion>() {
+        });
+        typesManaged.put(String.class, new ParameterizedTypeReference<String>() {
+        });
+        typesManaged.put(String[].class, new ParameterizedTypeReference<String[]>() {
+        });
+        typesManaged.put(Machine.class, new ParameterizedTypeReference<Machine>() {
+        });
+        typesManaged.put(Machine[].class, new ParameterizedTypeReference<Machine[]>() {
+        });
+        typesManaged.put(MachineSummary.class, new ParameterizedTypeReference<MachineSummary>() {
+        });
+        typesManaged.put(MachineSummary[].class, new ParameterizedTypeReference<MachineSummary[]>() {
+        });
+        typesManaged.put(Tag.class, new ParameterizedTypeReference<Tag>() {
+        });
+        typesManaged.put(Tag[].class, new ParameterizedTypeReference<Tag[]>() {
+        });
+        typesManaged.put(CommissioningScript.class, new ParameterizedTypeReference<CommissioningScript>() {
+        });
+        typesManaged.put(ByteArrayResource.class, new ParameterizedTypeReference<ByteArrayResource>() {
+        });
+        return Collections.unmodifiableMap(typesManaged);
+    }
+}
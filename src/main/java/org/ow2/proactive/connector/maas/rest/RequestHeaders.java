@@ -0,0 +1,80 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.rest;
+
+import java.util.Collections;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.MultiValueMap;
+
+
+/**
+ * Immutable header sets shared by all requests of the REST clients.
+ * <p>
+ * Headers are built once per method/media type and exposed read-only, so a client instance can be used
+ * concurrently without requests leaking their content type into each other.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+final class RequestHeaders {
+
+    /**
+     * Headers of requests without payload (GET, DELETE): JSON responses only.
+     */
+    static final HttpHeaders JSON = HttpHeaders.readOnlyHttpHeaders(jsonHeaders());
+
+    /**
+     * Headers of requests carrying form parts (POST).
+     */
+    static final HttpHeaders MULTIPART = HttpHeaders.readOnlyHttpHeaders(multipartHeaders());
+
+    /**
+     * Entity of requests without payload, shared as it is immutable.
+     */
+    static final HttpEntity<String> JSON_ENTITY = new HttpEntity<>("parameters", JSON);
+
+    private RequestHeaders() {
+    }
+
+    static HttpEntity<MultiValueMap<String, Object>> multipartEntity(MultiValueMap<String, Object> parts) {
+        return new HttpEntity<>(parts, MULTIPART);
+    }
+
+    private static HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        return headers;
+    }
+
+    private static HttpHeaders multipartHeaders() {
+        HttpHeaders headers = jsonHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return headers;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.rest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Bounded LRU cache of decoded GET responses, along with the validators needed to revalidate them.
+ * <p>
+ * Validators are the ETag and Last-Modified headers when the server provides them, and a hash of the
+ * payload otherwise. When the server answers 304 Not Modified, or sends a payload identical to the
+ * cached one, the previously decoded object is reused without running Jackson again.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class ResponseCache {
+
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public ResponseCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The response cache size must be strictly positive");
+        }
+        this.entries = new LruMap(maxEntries);
+    }
+
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(String key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * @return the number of responses served from the cache (not modified, or unchanged payload)
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of responses that had to be decoded
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Access-ordered map evicting its least recently used entry once the maximum size is exceeded.
+     */
+    private static class LruMap extends LinkedHashMap<String, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LruMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    static class Entry {
+
+        private final String eTag;
+
+        private final long lastModified;
+
+        private final String contentHash;
+
+        private final Object value;
+
+        Entry(String eTag, long lastModified, String contentHash, Object value) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.value = value;
+        }
+
+        String getETag() {
+            return eTag;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        String getContentHash() {
+            return contentHash;
+        }
+
+        Object getValue() {
+            return value;
+        }
+    }
+}
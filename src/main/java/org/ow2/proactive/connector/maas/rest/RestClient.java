@@ -25,25 +25,38 @@
  */
 package org.ow2.proactive.connector.maas.rest;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import org.ow2.proactive.connector.maas.data.CommissioningScript;
-import org.ow2.proactive.connector.maas.data.MaasVersion;
-import org.ow2.proactive.connector.maas.data.Machine;
-import org.ow2.proactive.connector.maas.data.Tag;
-import org.springframework.core.ParameterizedTypeReference;
+import org.apache.log4j.Logger;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 
 /**
  * @author ActiveEon Team
@@ -51,35 +64,36 @@ import org.springframework.web.client.RestTemplate;
  */
 public class RestClient {
 
-    private HashMap<Class, ParameterizedTypeReference> typesManaged;
+    private final Logger logger = Logger.getLogger(RestClient.class);
+
+    private final RestTemplate restTemplate;
 
-    private RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
 
-    private HttpHeaders headers;
+    private final String apiUrl;
 
-    private String apiUrl;
+    private final RequestCoalescer requestCoalescer = new RequestCoalescer();
+
+    private volatile ResponseCache responseCache;
 
     public RestClient(RestTemplate restTemplate, String apiUrl) {
 
         this.restTemplate = restTemplate;
         this.restTemplate.setErrorHandler(new RestClientErrorHandler());
         this.apiUrl = apiUrl;
-
-        // Set default headers and types to handle
-        setHeaders();
-        populateManagedTypes();
+        this.objectMapper = findObjectMapper(restTemplate);
 
         // Add message converters
         //restTemplate.getMessageConverters().add(new ByteArrayHttpMessageConverter());
     }
 
     public <T> ResponseEntity<T> deleteRequestWithArgs(Class<T> valueType, String resourceUrl, HashMap args) {
-        HttpEntity<String> httpEntity = new HttpEntity<>("parameters", headers);
+        HttpEntity<String> httpEntity = RequestHeaders.JSON_ENTITY;
         try {
             return restTemplate.exchange(apiUrl + resourceUrl,
                                          HttpMethod.DELETE,
                                          httpEntity,
-                                         typesManaged.get(valueType),
+                                         ManagedTypes.get(valueType),
                                          args);
         } catch (RestClientException e) {
             //return new ResponseEntity<T>(HttpStatus.EXPECTATION_FAILED);
@@ -89,13 +103,12 @@ public class RestClient {
 
     public <T> ResponseEntity<T> postRequest(Class<T> valueType, String resourceUrl,
             MultiValueMap<String, Object> parts) {
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-        HttpEntity<MultiValueMap<String, Object>> httpEntity = new HttpEntity<>(parts, headers);
+        HttpEntity<MultiValueMap<String, Object>> httpEntity = RequestHeaders.multipartEntity(parts);
         try {
             return restTemplate.exchange(apiUrl + resourceUrl,
                                          HttpMethod.POST,
                                          httpEntity,
-                                         typesManaged.get(valueType));
+                                         ManagedTypes.get(valueType));
         } catch (RestClientException e) {
             return new ResponseEntity<T>((T) e.getMostSpecificCause().getMessage(), HttpStatus.EXPECTATION_FAILED);
         }
@@ -103,14 +116,12 @@ public class RestClient {
 
     public <T> ResponseEntity<T> postRequestWithArgs(Class<T> valueType, String resourceUrl,
             MultiValueMap<String, Object> parts, HashMap args) {
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-        HttpEntity<MultiValueMap<String, Object>> httpEntity = new HttpEntity<MultiValueMap<String, Object>>(parts,
-                                                                                                             headers);
+        HttpEntity<MultiValueMap<String, Object>> httpEntity = RequestHeaders.multipartEntity(parts);
         try {
             return restTemplate.exchange(apiUrl + resourceUrl,
                                          HttpMethod.POST,
                                          httpEntity,
-                                         typesManaged.get(valueType),
+                                         ManagedTypes.get(valueType),
                                          args);
         } catch (RestClientException e) {
             return new ResponseEntity<T>((T) e.getMostSpecificCause().getMessage(), HttpStatus.EXPECTATION_FAILED);
@@ -118,51 +129,198 @@ public class RestClient {
     }
 
     public <T> ResponseEntity<T> getRequest(Class<T> valueType, String resourceUrl) {
-        HttpEntity<String> httpEntity = new HttpEntity<>("parameters", headers);
+        return requestCoalescer.execute(Arrays.asList(valueType, resourceUrl), () -> {
+            if (isCacheable(valueType)) {
+                return cachedGetRequest(valueType, restTemplate.getUriTemplateHandler().expand(apiUrl + resourceUrl));
+            }
+            HttpEntity<String> httpEntity = RequestHeaders.JSON_ENTITY;
+            try {
+                return restTemplate.exchange(apiUrl + resourceUrl,
+                                             HttpMethod.GET,
+                                             httpEntity,
+                                             ManagedTypes.get(valueType));
+            } catch (RestClientException e) {
+                return new ResponseEntity<T>((T) e.getMostSpecificCause().getMessage(),
+                                             HttpStatus.EXPECTATION_FAILED);
+            }
+        });
+    }
+
+    public <T> ResponseEntity<T> getRequestWithArgs(Class<T> valueType, String resourceUrl, HashMap args) {
+        return requestCoalescer.execute(Arrays.asList(valueType, resourceUrl, new HashMap<>(args)), () -> {
+            if (isCacheable(valueType)) {
+                return cachedGetRequest(valueType,
+                                        restTemplate.getUriTemplateHandler().expand(apiUrl + resourceUrl, args));
+            }
+            HttpEntity<String> httpEntity = RequestHeaders.JSON_ENTITY;
+            try {
+                return restTemplate.exchange(apiUrl + resourceUrl,
+                                             HttpMethod.GET,
+                                             httpEntity,
+                                             ManagedTypes.get(valueType),
+                                             args);
+            } catch (RestClientException e) {
+                return new ResponseEntity<T>((T) e.getMostSpecificCause().getMessage(),
+                                             HttpStatus.EXPECTATION_FAILED);
+            }
+        });
+    }
+
+    /**
+     * Once enabled, identical GET requests sent concurrently through this client share one HTTP request
+     * and its decoded result. The returned coalescer exposes the hit/miss counters and allows enabling it.
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * Enable the conditional GET cache: decoded responses are kept along with their validators (ETag,
+     * Last-Modified or payload hash), and reused as long as the server reports them as unchanged.
+     * <p>
+     * Cached objects are shared between callers and must therefore not be modified.
+     *
+     * @param maxEntries    The maximum number of responses to keep (least recently used are evicted first)
+     */
+    public void enableResponseCache(int maxEntries) {
+        responseCache = new ResponseCache(maxEntries);
+    }
+
+    public void disableResponseCache() {
+        responseCache = null;
+    }
+
+    /**
+     * @return the conditional GET cache, or null if disabled
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Send a GET request whose response is a JSON array, and decode its elements lazily while the returned
+     * stream is consumed: only one element is held in memory at a time.
+     * <p>
+     * The returned stream holds the HTTP connection and must be closed (e.g. with try-with-resources).
+     *
+     * @return the stream of decoded elements, or null on error
+     */
+    public <T> Stream<T> streamRequest(Class<T> elementType, String resourceUrl) {
+        ClientHttpResponse response = null;
         try {
-            return restTemplate.exchange(apiUrl + resourceUrl, HttpMethod.GET, httpEntity, typesManaged.get(valueType));
-        } catch (RestClientException e) {
-            return new ResponseEntity<T>((T) e.getMostSpecificCause().getMessage(), HttpStatus.EXPECTATION_FAILED);
+            URI uri = restTemplate.getUriTemplateHandler().expand(apiUrl + resourceUrl);
+            ClientHttpRequest request = restTemplate.getRequestFactory().createRequest(uri, HttpMethod.GET);
+            request.getHeaders().putAll(RequestHeaders.JSON);
+            response = request.execute();
+            if (restTemplate.getErrorHandler().hasError(response)) {
+                restTemplate.getErrorHandler().handleError(response);
+                response.close();
+                return null;
+            }
+
+            JsonParser parser = objectMapper.getFactory().createParser(response.getBody());
+            JsonArrayIterator<T> iterator = new JsonArrayIterator<>(parser, objectMapper.readerFor(elementType));
+            ClientHttpResponse openResponse = response;
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                                                                            Spliterator.ORDERED | Spliterator.NONNULL),
+                                        false)
+                                .onClose(() -> {
+                                    try {
+                                        parser.close();
+                                    } catch (IOException e) {
+                                        // ignore
+                                    }
+                                    openResponse.close();
+                                });
+        } catch (IOException | RestClientException e) {
+            logger.error("Unable to stream " + resourceUrl + ": " + e.getMessage());
+            if (response != null) {
+                response.close();
+            }
+            return null;
         }
     }
 
-    public <T> ResponseEntity<T> getRequestWithArgs(Class<T> valueType, String resourceUrl, HashMap args) {
-        HttpEntity<String> httpEntity = new HttpEntity<>("parameters", headers);
+    private boolean isCacheable(Class<?> valueType) {
+        // Binary resources are not worth decoding ourselves nor keeping in memory
+        return responseCache != null && valueType != ByteArrayResource.class;
+    }
+
+    private <T> ResponseEntity<T> cachedGetRequest(Class<T> valueType, URI uri) {
+        ResponseCache cache = responseCache;
+        String key = valueType.getName() + " " + uri;
+        ResponseCache.Entry cached = cache.get(key);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(RequestHeaders.JSON);
+        if (cached != null && cached.getETag() != null) {
+            headers.setIfNoneMatch(cached.getETag());
+        }
+        if (cached != null && cached.getLastModified() > 0) {
+            headers.setIfModifiedSince(cached.getLastModified());
+        }
+
         try {
-            return restTemplate.exchange(apiUrl + resourceUrl,
-                                         HttpMethod.GET,
-                                         httpEntity,
-                                         typesManaged.get(valueType),
-                                         args);
+            ResponseEntity<byte[]> response = restTemplate.exchange(uri,
+                                                                    HttpMethod.GET,
+                                                                    new HttpEntity<>(headers),
+                                                                    byte[].class);
+            byte[] payload = response.getBody() != null ? response.getBody() : new byte[0];
+            if (RestClientErrorHandler.hasError(response.getStatusCode())) {
+                return new ResponseEntity<T>((T) new String(payload, StandardCharsets.UTF_8),
+                                             response.getStatusCode());
+            }
+
+            if (cached != null && response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                cache.recordHit();
+                return new ResponseEntity<T>((T) cached.getValue(), HttpStatus.OK);
+            }
+
+            String contentHash = hash(payload);
+            if (cached != null && contentHash.equals(cached.getContentHash())) {
+                cache.recordHit();
+                return new ResponseEntity<T>((T) cached.getValue(), response.getHeaders(), HttpStatus.OK);
+            }
+
+            cache.recordMiss();
+            T value = decode(valueType, payload);
+            cache.put(key,
+                      new ResponseCache.Entry(response.getHeaders().getETag(),
+                                              response.getHeaders().getLastModified(),
+                                              contentHash,
+                                              value));
+            return new ResponseEntity<T>(value, response.getHeaders(), response.getStatusCode());
         } catch (RestClientException e) {
             return new ResponseEntity<T>((T) e.getMostSpecificCause().getMessage(), HttpStatus.EXPECTATION_FAILED);
+        } catch (IOException e) {
+            return new ResponseEntity<T>((T) e.getMessage(), HttpStatus.EXPECTATION_FAILED);
         }
     }
 
-    private void setHeaders() {
-        headers = new HttpHeaders();
-        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+    private <T> T decode(Class<T> valueType, byte[] payload) throws IOException {
+        if (valueType == String.class) {
+            return (T) new String(payload, StandardCharsets.UTF_8);
+        }
+        JavaType javaType = objectMapper.getTypeFactory().constructType(ManagedTypes.get(valueType).getType());
+        return objectMapper.readValue(payload, javaType);
     }
 
-    private void populateManagedTypes() {
-        typesManaged = new HashMap<>();
-        typesManaged.put(MaasVersion.class, new ParameterizedTypeReference<MaasVersion>() {
-        });
-        typesManaged.put(String.class, new ParameterizedTypeReference<String>() {
-        });
-        typesManaged.put(String[].class, new ParameterizedTypeReference<String[]>() {
-        });
-        typesManaged.put(Machine.class, new ParameterizedTypeReference<Machine>() {
-        });
-        typesManaged.put(Machine[].class, new ParameterizedTypeReference<Machine[]>() {
-        });
-        typesManaged.put(Tag.class, new ParameterizedTypeReference<Tag>() {
-        });
-        typesManaged.put(Tag[].class, new ParameterizedTypeReference<Tag[]>() {
-        });
-        typesManaged.put(CommissioningScript.class, new ParameterizedTypeReference<CommissioningScript>() {
-        });
-        typesManaged.put(ByteArrayResource.class, new ParameterizedTypeReference<ByteArrayResource>() {
-        });
+    private static String hash(byte[] payload) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(payload));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ObjectMapper findObjectMapper(RestTemplate restTemplate) {
+        // Reuse the mapper configured on the template so that streamed objects are decoded the same way
+        for (HttpMessageConverter<?> converter : restTemplate.getMessageConverters()) {
+            if (converter instanceof MappingJackson2HttpMessageConverter) {
+                return ((MappingJackson2HttpMessageConverter) converter).getObjectMapper();
+            }
+        }
+        return new ObjectMapper();
     }
 }
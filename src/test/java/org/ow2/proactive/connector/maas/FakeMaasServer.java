@@ -0,0 +1,112 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * Minimal MAAS API served on localhost, answering the connection check of the clients.
+ * Tests register the resources they need with {@link #respond(String, Responder)}.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class FakeMaasServer implements Closeable {
+
+    public static final String API_KEY = "consumer:token:secret";
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    /**
+     * Builds the JSON response of a request, from its exchange and its body.
+     */
+    public interface Responder {
+        String respond(HttpExchange exchange, String body) throws IOException;
+    }
+
+    public FakeMaasServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        respond("/api/2.0/maas/", (exchange, body) -> "\"fake-maas\"");
+        server.start();
+    }
+
+    public String getApiUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/api/2.0";
+    }
+
+    /**
+     * Answer the requests whose path starts with the provided one (relative to the API URL).
+     */
+    public void respond(String path, Responder responder) {
+        server.createContext(path.startsWith("/api/") ? path : "/api/2.0" + path, exchange -> {
+            try {
+                byte[] response = responder.respond(exchange, readBody(exchange)).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            } catch (IOException | RuntimeException e) {
+                exchange.sendResponseHeaders(500, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
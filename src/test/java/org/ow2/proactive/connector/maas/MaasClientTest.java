@@ -0,0 +1,218 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.ow2.proactive.connector.maas.batch.BulkOutcome;
+import org.ow2.proactive.connector.maas.batch.TagSyncResult;
+import org.ow2.proactive.connector.maas.data.Machine;
+import org.ow2.proactive.connector.maas.data.MachineStatus;
+
+
+/**
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class MaasClientTest {
+
+    private static final Pattern STOP_MODE_PART = Pattern.compile("name=\"stop_mode\"\r\n(?:.+\r\n)*\r\n(.+)\r\n");
+
+    private static final Pattern MACHINE_OPERATION = Pattern.compile("/api/2\\.0/machines/([^/]+)/");
+
+    private static final String MACHINES = "[{\"system_id\":\"m1\",\"hostname\":\"node1\",\"status\":6," +
+                                           "\"tag_names\":[\"gpu\"]," +
+                                           "\"interface_set\":[{\"mac_address\":\"AA:BB:CC:00:00:01\"}]}," +
+                                           "{\"system_id\":\"m2\",\"hostname\":\"node2\",\"status\":4}]";
+
+    @Test
+    public void testPowerOffSendsTheStopMode() throws Exception {
+        Map<String, String> stopModes = new ConcurrentHashMap<>();
+        try (FakeMaasServer server = new FakeMaasServer()) {
+            server.respond("/machines/", (exchange, body) -> {
+                Matcher systemId = MACHINE_OPERATION.matcher(exchange.getRequestURI().getPath());
+                Matcher stopMode = STOP_MODE_PART.matcher(body);
+                if (systemId.matches() && "op=power_off".equals(exchange.getRequestURI().getQuery()) &&
+                    stopMode.find()) {
+                    stopModes.put(systemId.group(1), stopMode.group(1));
+                }
+                return "{}";
+            });
+            MaasClient maasClient = new MaasClient(server.getApiUrl(), FakeMaasServer.API_KEY, false);
+            AsyncMaasClient asyncMaasClient = new AsyncMaasClient(server.getApiUrl(), FakeMaasServer.API_KEY, false);
+            try {
+                Map<String, BulkOutcome> outcomes = maasClient.powerOff(Arrays.asList("m1", "m2"), "soft");
+                assertTrue(asyncMaasClient.powerOffMachine("m3", "hard").get(5, TimeUnit.SECONDS));
+
+                assertEquals(BulkOutcome.SUCCEEDED, outcomes.get("m1"));
+                assertEquals(BulkOutcome.SUCCEEDED, outcomes.get("m2"));
+                assertEquals("soft", stopModes.get("m1"));
+                assertEquals("soft", stopModes.get("m2"));
+                assertEquals("hard", stopModes.get("m3"));
+            } finally {
+                asyncMaasClient.close();
+                maasClient.close();
+            }
+        }
+    }
+
+    @Test
+    public void testSyncTagMembershipOnlyReportsAppliedChunks() throws Exception {
+        AtomicInteger updateRequests = new AtomicInteger();
+        try (FakeMaasServer server = new FakeMaasServer()) {
+            server.respond("/tags/", (exchange, body) -> {
+                if ("GET".equals(exchange.getRequestMethod())) {
+                    return "[]";
+                }
+                if (updateRequests.incrementAndGet() == 2) {
+                    throw new IllegalStateException("Update rejected");
+                }
+                return "{}";
+            });
+            MaasClient maasClient = new MaasClient(server.getApiUrl(), FakeMaasServer.API_KEY, false);
+            try {
+                Set<String> desired = IntStream.range(0, MaasClient.MAX_TAG_UPDATE_NODES + 10)
+                                               .mapToObj(i -> "node-" + i)
+                                               .collect(Collectors.toSet());
+
+                TagSyncResult result = maasClient.syncTagMembership("tag", desired);
+
+                assertEquals(2, result.getRequests());
+                assertFalse(result.isSuccessful());
+                assertEquals(MaasClient.MAX_TAG_UPDATE_NODES, result.getAdded().size());
+                assertEquals(10, result.getFailedToAdd().size());
+                Set<String> all = new HashSet<>(result.getAdded());
+                all.addAll(result.getFailedToAdd());
+                assertEquals(desired, all);
+            } finally {
+                maasClient.close();
+            }
+        }
+    }
+
+    @Test
+    public void testLookupsAreServedFromTheMachineInventory() throws Exception {
+        AtomicInteger listRequests = new AtomicInteger();
+        AtomicInteger filteredRequests = new AtomicInteger();
+        try (FakeMaasServer server = new FakeMaasServer()) {
+            server.respond("/machines/", (exchange, body) -> {
+                if (exchange.getRequestURI().getQuery() != null) {
+                    filteredRequests.incrementAndGet();
+                    return "[]";
+                }
+                listRequests.incrementAndGet();
+                return MACHINES;
+            });
+            MaasClient maasClient = new MaasClient(server.getApiUrl(), FakeMaasServer.API_KEY, false);
+            try {
+                maasClient.enableMachineInventory(1, TimeUnit.HOURS);
+
+                assertEquals("m1", maasClient.getMachineByName("node1", 1, TimeUnit.HOURS).getSystemId());
+                assertEquals("m1",
+                             maasClient.getMachineByMacAddress("aa:bb:cc:00:00:01", 1, TimeUnit.HOURS).getSystemId());
+                assertNull(maasClient.getMachineByName("node3", 1, TimeUnit.HOURS));
+                List<Machine> tagged = maasClient.getMachinesByTagName("gpu", 1, TimeUnit.HOURS);
+                assertEquals(1, tagged.size());
+                List<Machine> ready = maasClient.getMachinesByStatus(MachineStatus.READY, 1, TimeUnit.HOURS);
+                assertEquals("m2", ready.get(0).getSystemId());
+
+                assertEquals(0, filteredRequests.get());
+                // The background refresh may run alongside the first lookup
+                assertTrue(listRequests.get() <= 2);
+            } finally {
+                maasClient.close();
+            }
+        }
+    }
+
+    @Test
+    public void testChunkByQueryLengthKeepsQueriesUnderLimit() throws Exception {
+        List<String> systemIds = IntStream.range(0, 5000)
+                                          .mapToObj(i -> String.format("node-%06d", i))
+                                          .collect(Collectors.toList());
+
+        List<List<String>> chunks = MaasClient.chunkByQueryLength("id", systemIds);
+
+        assertTrue(chunks.size() > 1);
+        List<String> chunked = new ArrayList<>();
+        for (List<String> chunk : chunks) {
+            StringBuilder query = new StringBuilder();
+            for (String systemId : chunk) {
+                query.append("id=").append(URLEncoder.encode(systemId, "UTF-8")).append('&');
+            }
+            assertTrue(query.length() <= MaasClient.MAX_FILTER_QUERY_LENGTH);
+            chunked.addAll(chunk);
+        }
+        // Nothing lost, nothing reordered
+        assertEquals(systemIds, chunked);
+    }
+
+    @Test
+    public void testChunkByQueryLengthCountsEncodedLength() {
+        // 1000 characters, each one encoded as %XX
+        String value = String.join("", Collections.nCopies(1000, "/"));
+
+        List<List<String>> chunks = MaasClient.chunkByQueryLength("hostname", Arrays.asList(value, value + "a"));
+
+        assertEquals(2, chunks.size());
+    }
+
+    @Test
+    public void testChunkByQueryLengthRemovesDuplicates() {
+        List<List<String>> chunks = MaasClient.chunkByQueryLength("id", Arrays.asList("a", "b", "a", "c", "b"));
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c")), chunks);
+    }
+
+    @Test
+    public void testChunkByQueryLengthKeepsOversizedValue() {
+        String value = String.join("", Collections.nCopies(MaasClient.MAX_FILTER_QUERY_LENGTH, "x"));
+
+        List<List<String>> chunks = MaasClient.chunkByQueryLength("id", Arrays.asList("a", value, "b"));
+
+        assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList(value), Arrays.asList("b")), chunks);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+
+/**
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class BulkExecutorTest {
+
+    @Test
+    public void testChunk() {
+        List<List<Integer>> chunks = BulkExecutor.chunk(Arrays.asList(1, 2, 3, 4, 5), 2);
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5)), chunks);
+        assertEquals(Collections.emptyList(), BulkExecutor.chunk(Collections.emptyList(), 2));
+    }
+
+    @Test
+    public void testOutcomesOfAllChunksAreGathered() {
+        List<Integer> items = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        Map<Integer, BulkOutcome> outcomes = new BulkExecutor(4).execute(BulkExecutor.chunk(items, 10), chunk -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            sleep(2);
+            inFlight.decrementAndGet();
+            return outcomes(chunk, BulkOutcome.SUCCEEDED);
+        });
+
+        assertEquals(items, outcomes.keySet().stream().collect(Collectors.toList()));
+        assertTrue(outcomes.values().stream().allMatch(outcome -> outcome == BulkOutcome.SUCCEEDED));
+        assertTrue(maxInFlight.get() <= 4);
+    }
+
+    @Test
+    public void testFailedChunkIsReportedAsFailed() {
+        Function<List<Integer>, Map<Integer, BulkOutcome>> action = chunk -> {
+            if (chunk.contains(2)) {
+                throw new IllegalStateException("Request failed");
+            }
+            // Item 3 is not reported
+            return chunk.contains(1) ? outcomes(chunk, BulkOutcome.SUCCEEDED) : null;
+        };
+
+        Map<Integer, BulkOutcome> outcomes = new BulkExecutor(2).execute(BulkExecutor.chunk(Arrays.asList(1, 2, 3), 1),
+                                                                         action);
+
+        assertEquals(BulkOutcome.SUCCEEDED, outcomes.get(1));
+        assertEquals(BulkOutcome.FAILED, outcomes.get(2));
+        assertEquals(BulkOutcome.FAILED, outcomes.get(3));
+    }
+
+    @Test
+    public void testSlowRequestTimesOutWithoutDelayingTheOthers() {
+        Function<List<Integer>, Map<Integer, BulkOutcome>> action = chunk -> {
+            if (chunk.contains(1)) {
+                sleep(2000);
+            }
+            return outcomes(chunk, BulkOutcome.SUCCEEDED);
+        };
+        long start = System.currentTimeMillis();
+
+        Map<Integer, BulkOutcome> outcomes = new BulkExecutor(1, 300, TimeUnit.MILLISECONDS).execute(chunks(1, 2, 3),
+                                                                                                     action);
+
+        assertEquals(BulkOutcome.TIMED_OUT, outcomes.get(1));
+        // Each request has its own deadline, counted from its dispatch
+        assertEquals(BulkOutcome.SUCCEEDED, outcomes.get(2));
+        assertEquals(BulkOutcome.SUCCEEDED, outcomes.get(3));
+        assertTrue(System.currentTimeMillis() - start < 1500);
+    }
+
+    @Test
+    public void testChunksNotDispatchedAreReportedAsNotSent() throws Exception {
+        CountDownLatch dispatched = new CountDownLatch(1);
+        Set<Integer> sent = ConcurrentHashMap.newKeySet();
+        Function<List<Integer>, Map<Integer, BulkOutcome>> action = chunk -> {
+            sent.addAll(chunk);
+            dispatched.countDown();
+            sleep(2000);
+            return outcomes(chunk, BulkOutcome.SUCCEEDED);
+        };
+        AtomicReference<Thread> caller = new AtomicReference<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Map<Integer, BulkOutcome>> outcomes = executor.submit(() -> {
+                caller.set(Thread.currentThread());
+                return new BulkExecutor(1).execute(chunks(1, 2, 3), action);
+            });
+            dispatched.await(5, TimeUnit.SECONDS);
+            caller.get().interrupt();
+
+            assertEquals(BulkOutcome.TIMED_OUT, outcomes.get(5, TimeUnit.SECONDS).get(1));
+            assertEquals(BulkOutcome.NOT_SENT, outcomes.get().get(2));
+            assertEquals(BulkOutcome.NOT_SENT, outcomes.get().get(3));
+            assertEquals(Collections.singleton(1), sent);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<List<Integer>> chunks(Integer... items) {
+        return BulkExecutor.chunk(Arrays.asList(items), 1);
+    }
+
+    private static <K> Map<K, BulkOutcome> outcomes(List<K> chunk, BulkOutcome outcome) {
+        Map<K, BulkOutcome> outcomes = new LinkedHashMap<>();
+        chunk.forEach(item -> outcomes.put(item, outcome));
+        return outcomes;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.proactive.connector.maas.FakeMaasServer;
+import org.ow2.proactive.connector.maas.MaasClient;
+
+
+/**
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class TagMembershipBatcherTest {
+
+    /**
+     * Value of an "add" part of a multipart body, after the part headers
+     */
+    private static final Pattern ADDED_MACHINE = Pattern.compile("name=\"add\"\r\n(?:.+\r\n)*\r\n(.+)\r\n");
+
+    private FakeMaasServer server;
+
+    private MaasClient maasClient;
+
+    private final AtomicInteger updateRequests = new AtomicInteger();
+
+    private final Set<String> taggedMachines = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMaasServer();
+        server.respond("/tags/", (exchange, body) -> {
+            updateRequests.incrementAndGet();
+            Matcher matcher = ADDED_MACHINE.matcher(body);
+            while (matcher.find()) {
+                taggedMachines.add(matcher.group(1));
+            }
+            return "{}";
+        });
+        maasClient = new MaasClient(server.getApiUrl(), FakeMaasServer.API_KEY, false);
+    }
+
+    @After
+    public void tearDown() {
+        maasClient.close();
+        server.close();
+    }
+
+    @Test
+    public void testConcurrentRequestsAreBatched() throws Exception {
+        int threads = 16;
+        int machinesPerThread = 50;
+        TagMembershipBatcher batcher = new TagMembershipBatcher(maasClient, 200, TimeUnit.MILLISECONDS, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Set<String> expectedMachines = new HashSet<>();
+        List<Future<List<CompletableFuture<Boolean>>>> results = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < threads; thread++) {
+                int threadIndex = thread;
+                for (int i = 0; i < machinesPerThread; i++) {
+                    expectedMachines.add("node" + threadIndex + "x" + i);
+                }
+                results.add(executor.submit(() -> {
+                    List<CompletableFuture<Boolean>> tagged = new ArrayList<>();
+                    for (int i = 0; i < machinesPerThread; i++) {
+                        tagged.add(batcher.add("tag", "node" + threadIndex + "x" + i));
+                    }
+                    return tagged;
+                }));
+            }
+            for (Future<List<CompletableFuture<Boolean>>> result : results) {
+                for (CompletableFuture<Boolean> tagged : result.get(30, TimeUnit.SECONDS)) {
+                    assertTrue(tagged.get(30, TimeUnit.SECONDS));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            batcher.shutdown();
+        }
+
+        assertEquals(expectedMachines, taggedMachines);
+        // 800 machines, at most 100 per request
+        assertTrue("Sent " + updateRequests.get() + " requests", updateRequests.get() <= 16);
+    }
+
+    @Test
+    public void testPendingBatchesAreSentOnShutdown() throws Exception {
+        TagMembershipBatcher batcher = new TagMembershipBatcher(maasClient, 1, TimeUnit.HOURS, 100);
+
+        CompletableFuture<Boolean> tagged = batcher.add("tag", "node1");
+        batcher.shutdown();
+
+        assertTrue(tagged.get(5, TimeUnit.SECONDS));
+        assertEquals(1, updateRequests.get());
+    }
+}
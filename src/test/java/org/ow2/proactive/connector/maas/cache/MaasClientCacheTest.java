@@ -0,0 +1,82 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+import org.ow2.proactive.connector.maas.data.Machine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class MaasClientCacheTest {
+
+    private final MaasClientCache cache = new MaasClientCache(new MaasCacheConfig.Builder().build());
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void testInvalidateMachineDropsItsHostnames() {
+        Function<String, Machine> loader = hostname -> machine("m1");
+
+        cache.getMachineByName("host", loader);
+        cache.getMachineByName("alias", loader);
+        cache.getMachineByName("host", loader);
+        assertEquals(2, loads.get());
+
+        cache.invalidateMachine("m1");
+        cache.getMachineByName("host", loader);
+        cache.getMachineByName("alias", loader);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testInvalidateMachineKeepsOtherMachines() {
+        cache.getMachineByName("host", hostname -> machine("m1"));
+
+        cache.invalidateMachine("m2");
+        cache.getMachineByName("host", hostname -> machine("m1"));
+        assertEquals(1, loads.get());
+    }
+
+    private Machine machine(String systemId) {
+        loads.incrementAndGet();
+        try {
+            return new ObjectMapper().readValue("{\"system_id\":\"" + systemId + "\"}", Machine.class);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
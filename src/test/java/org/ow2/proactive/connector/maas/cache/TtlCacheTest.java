@@ -0,0 +1,186 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+
+/**
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class TtlCacheTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testValueIsCachedUntilExpiration() throws Exception {
+        TtlCache<String, String> cache = new TtlCache<>(100, 10);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v1", cache.get("key", key -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", cache.get("key", key -> "v" + loads.incrementAndGet()));
+        Thread.sleep(150);
+        assertEquals("v2", cache.get("key", key -> "v" + loads.incrementAndGet()));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testNullIsNotCached() {
+        TtlCache<String, String> cache = new TtlCache<>(10000, 10);
+
+        assertNull(cache.get("key", key -> null));
+        assertEquals("value", cache.get("key", key -> "value"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        TtlCache<Integer, Integer> cache = new TtlCache<>(10000, 2);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.get(1, key -> -1);
+        cache.put(3, 3);
+
+        assertEquals(2, cache.size());
+        assertEquals(Integer.valueOf(1), cache.get(1, key -> -1));
+        assertEquals(Integer.valueOf(-2), cache.get(2, key -> -2));
+    }
+
+    @Test
+    public void testValueLoadedAcrossInvalidationIsNotCached() throws Exception {
+        TtlCache<String, String> cache = new TtlCache<>(10000, 10);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+
+        Future<String> staleLoad = executor.submit(() -> cache.get("key", key -> {
+            loading.countDown();
+            await(invalidated);
+            return "stale";
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+        cache.invalidate("key");
+        invalidated.countDown();
+
+        // The caller still gets what it loaded, but the next one loads again
+        assertEquals("stale", staleLoad.get(5, TimeUnit.SECONDS));
+        assertEquals("fresh", cache.get("key", key -> "fresh"));
+    }
+
+    @Test
+    public void testValueLoadedAcrossInvalidateAllIsNotCached() throws Exception {
+        TtlCache<String, String> cache = new TtlCache<>(10000, 10);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+
+        Future<String> staleLoad = executor.submit(() -> cache.get("key", key -> {
+            loading.countDown();
+            await(invalidated);
+            return "stale";
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+        cache.invalidateIf(value -> true);
+        invalidated.countDown();
+
+        assertEquals("stale", staleLoad.get(5, TimeUnit.SECONDS));
+        assertEquals("fresh", cache.get("key", key -> "fresh"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testValueLoadedAcrossInvalidateLoadingIsNotCached() throws Exception {
+        TtlCache<String, String> cache = new TtlCache<>(10000, 10);
+        cache.put("cached", "value");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+
+        Future<String> staleLoad = executor.submit(() -> cache.get("key", key -> {
+            loading.countDown();
+            await(invalidated);
+            return "stale";
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+        cache.invalidateLoading();
+        invalidated.countDown();
+
+        assertEquals("stale", staleLoad.get(5, TimeUnit.SECONDS));
+        assertEquals("fresh", cache.get("key", key -> "fresh"));
+        // Cached values are kept
+        assertEquals("value", cache.get("cached", key -> "reloaded"));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        TtlCache<Integer, Integer> cache = new TtlCache<>(10000, 50);
+        List<Future<?>> results = new ArrayList<>();
+        for (int thread = 0; thread < 16; thread++) {
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    int key = i % 100;
+                    Integer value = cache.get(key, k -> k * 2);
+                    assertEquals(Integer.valueOf(key * 2), value);
+                    if (i % 7 == 0) {
+                        cache.invalidate(key);
+                    }
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(16 * 10000, cache.getHits() + cache.getMisses());
+        assertTrue(cache.size() <= 50);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.polling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.proactive.connector.maas.FakeMaasServer;
+import org.ow2.proactive.connector.maas.MaasClient;
+import org.ow2.proactive.connector.maas.data.Machine;
+import org.ow2.proactive.connector.maas.data.MachineStatus;
+import org.ow2.proactive.connector.maas.data.Tag;
+
+
+/**
+ * Runs deployments against a fake MAAS whose machines move from status to status as the steps are requested.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class MaasClientPollingServiceTest {
+
+    private static final Pattern SYSTEM_ID_PART = Pattern.compile("name=\"system_id\"\r\n(?:.+\r\n)*\r\n(.+)\r\n");
+
+    private static final Pattern MACHINES_PART = Pattern.compile("name=\"machines\"\r\n(?:.+\r\n)*\r\n(.+)\r\n");
+
+    private static final Pattern ADDED_MACHINE = Pattern.compile("name=\"add\"\r\n(?:.+\r\n)*\r\n(.+)\r\n");
+
+    private static final Pattern MACHINE_OPERATION = Pattern.compile("/api/2\\.0/machines/([^/]+)/");
+
+    /**
+     * System ID of the first machine allocated by resources
+     */
+    private static final String MATCHING_MACHINE = "matching-0";
+
+    private static final ResourceProfile PROFILE = new ResourceProfile(2, 1024);
+
+    private static final List<Tag> TAGS = Collections.singletonList(new Tag(null, null, "test-tag", null, null));
+
+    private FakeMaasServer server;
+
+    private MaasClientPollingService pollingService;
+
+    private final Map<String, MachineStatus> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * Status reached by each machine once it has been seen deploying (machines without outcome keep deploying)
+     */
+    private final Map<String, MachineStatus> deploymentOutcomes = new ConcurrentHashMap<>();
+
+    private final Set<String> deployedMachines = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> releasedMachines = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> taggedMachines = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger matchingMachines = new AtomicInteger();
+
+    /**
+     * Status of the machines right after their allocation is requested
+     */
+    private volatile MachineStatus allocationStatus = MachineStatus.ALLOCATED;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMaasServer();
+        server.respond("/machines/", (exchange, body) -> {
+            String query = exchange.getRequestURI().getQuery();
+            Matcher operation = MACHINE_OPERATION.matcher(exchange.getRequestURI().getPath());
+            if ("op=allocate".equals(query)) {
+                Matcher systemId = SYSTEM_ID_PART.matcher(body);
+                return allocate(systemId.find() ? systemId.group(1) : "matching-" + matchingMachines.getAndIncrement());
+            } else if (operation.matches() && "op=deploy".equals(query)) {
+                return deploy(operation.group(1));
+            } else if (operation.matches() && "op=release".equals(query)) {
+                return release(operation.group(1));
+            } else if ("op=release".equals(query)) {
+                List<String> released = new ArrayList<>();
+                Matcher systemId = MACHINES_PART.matcher(body);
+                while (systemId.find()) {
+                    released.add("\"" + systemId.group(1) + "\"");
+                    release(systemId.group(1));
+                }
+                return released.stream().collect(Collectors.joining(",", "[", "]"));
+            } else if (operation.matches() && query == null) {
+                return machine(operation.group(1));
+            } else if (query != null && query.startsWith("id=")) {
+                return summaries(Stream.of(query.split("&")).map(parameter -> parameter.substring(3)));
+            }
+            throw new IllegalArgumentException("Unexpected request " + exchange.getRequestURI());
+        });
+        server.respond("/tags/", (exchange, body) -> {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                return "[]";
+            }
+            Matcher matcher = ADDED_MACHINE.matcher(body);
+            while (matcher.find()) {
+                taggedMachines.add(matcher.group(1));
+            }
+            return "{}";
+        });
+
+        PollingStrategy fastPolling = new FixedPollingStrategy(50, TimeUnit.MILLISECONDS);
+        pollingService = new MaasClientPollingService(new MaasClient(server.getApiUrl(),
+                                                                     FakeMaasServer.API_KEY,
+                                                                     false),
+                                                      4,
+                                                      new PollingConfig.Builder().allocating(fastPolling)
+                                                                                 .deploying(fastPolling)
+                                                                                 .build());
+    }
+
+    @After
+    public void tearDown() {
+        pollingService.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void testDeploymentByIdGoesThroughAllocationAndDeployment() throws Exception {
+        statuses.put("m1", MachineStatus.READY);
+        deploymentOutcomes.put("m1", MachineStatus.DEPLOYED);
+
+        Machine machine = pollingService.deployMachineById("m1", "user-data", TAGS, Duration.ofSeconds(30))
+                                        .get(10, TimeUnit.SECONDS);
+
+        assertEquals("m1", machine.getSystemId());
+        assertEquals(MachineStatus.DEPLOYED, statuses.get("m1"));
+        assertTrue(deployedMachines.contains("m1"));
+        assertTrue(taggedMachines.contains("m1"));
+        assertTrue(releasedMachines.isEmpty());
+    }
+
+    @Test
+    public void testDeploymentByResourcesDeploysTheMatchingMachine() throws Exception {
+        deploymentOutcomes.put(MATCHING_MACHINE, MachineStatus.DEPLOYED);
+
+        Machine machine = pollingService.deployMachineByResources(2, 1024, null, TAGS, Duration.ofSeconds(30))
+                                        .get(10, TimeUnit.SECONDS);
+
+        assertEquals(MATCHING_MACHINE, machine.getSystemId());
+        assertTrue(deployedMachines.contains(MATCHING_MACHINE));
+        assertTrue(taggedMachines.contains(MATCHING_MACHINE));
+    }
+
+    @Test
+    public void testTimedOutDeploymentByResourcesReleasesItsMachine() throws Exception {
+        // Never deployed
+        try {
+            pollingService.deployMachineByResources(2, 1024, null, TAGS, Duration.ofMillis(500))
+                          .get(10, TimeUnit.SECONDS);
+            fail("The deployment should have been cancelled on timeout");
+        } catch (CancellationException e) {
+            // Expected
+        }
+
+        waitUntil(() -> releasedMachines.contains(MATCHING_MACHINE));
+    }
+
+    @Test
+    public void testTimedOutDeploymentByIdLeavesItsMachine() throws Exception {
+        statuses.put("m1", MachineStatus.READY);
+        try {
+            pollingService.deployMachineById("m1", null, TAGS, Duration.ofMillis(500)).get(10, TimeUnit.SECONDS);
+            fail("The deployment should have been cancelled on timeout");
+        } catch (CancellationException e) {
+            // Expected
+        }
+
+        Thread.sleep(500);
+        assertFalse(releasedMachines.contains("m1"));
+    }
+
+    @Test
+    public void testDeploymentFailsAsSoonAsTheMachineFails() throws Exception {
+        deploymentOutcomes.put(MATCHING_MACHINE, MachineStatus.FAILED_DEPLOYMENT);
+
+        MachineDeploymentException failure = getFailure(MATCHING_MACHINE);
+
+        assertSame(MachineStatus.FAILED_DEPLOYMENT, failure.getStatus());
+        waitUntil(() -> releasedMachines.contains(MATCHING_MACHINE));
+    }
+
+    @Test
+    public void testDeploymentFailsWhenTheMachineGoesBack() throws Exception {
+        // Deployment aborted by someone else
+        deploymentOutcomes.put(MATCHING_MACHINE, MachineStatus.ALLOCATED);
+
+        MachineDeploymentException failure = getFailure(MATCHING_MACHINE);
+
+        assertSame(MachineStatus.ALLOCATED, failure.getStatus());
+        assertSame(DeploymentPhase.DEPLOYING, failure.getPhase());
+    }
+
+    @Test
+    public void testDeploymentPhasesOnlyMoveForward() {
+        assertTrue(DeploymentPhase.DEPLOYING.isLegalTransition(null, MachineStatus.ALLOCATED));
+        assertTrue(DeploymentPhase.DEPLOYING.isLegalTransition(MachineStatus.DEPLOYING, MachineStatus.DEPLOYING));
+        assertTrue(DeploymentPhase.DEPLOYING.isLegalTransition(MachineStatus.ALLOCATED, MachineStatus.DEPLOYED));
+        assertFalse(DeploymentPhase.DEPLOYING.isLegalTransition(MachineStatus.DEPLOYING, MachineStatus.ALLOCATED));
+        assertFalse(DeploymentPhase.DEPLOYING.isLegalTransition(null, MachineStatus.READY));
+        assertFalse(DeploymentPhase.ALLOCATING.isLegalTransition(MachineStatus.READY, MachineStatus.BROKEN));
+    }
+
+    @Test
+    public void testWarmPoolServesAndRefillsAllocatedMachines() throws Exception {
+        WarmPoolManager warmPool = pollingService.getWarmPool();
+        warmPool.setTargetSize(PROFILE, 1, WarmPoolMode.ALLOCATED);
+        waitUntil(() -> warmPool.getAvailable(PROFILE) == 1);
+        deploymentOutcomes.put(MATCHING_MACHINE, MachineStatus.DEPLOYED);
+
+        Machine machine = pollingService.deployMachineByResources(PROFILE, "user-data", TAGS, Duration.ofSeconds(30))
+                                        .get(10, TimeUnit.SECONDS);
+
+        assertEquals(MATCHING_MACHINE, machine.getSystemId());
+        assertEquals(1, warmPool.getHits());
+        // Replaced by a newly allocated machine, released with the pool
+        waitUntil(() -> warmPool.getAvailable(PROFILE) == 1);
+        pollingService.shutdown();
+        assertTrue(releasedMachines.contains("matching-1"));
+        assertFalse(releasedMachines.contains(MATCHING_MACHINE));
+    }
+
+    @Test
+    public void testTimedOutRefillReleasesItsMachine() throws Exception {
+        // Never allocated
+        allocationStatus = MachineStatus.READY;
+        WarmPoolManager warmPool = pollingService.getWarmPool();
+        warmPool.setRefillTimeout(Duration.ofMillis(500));
+        warmPool.setTargetSize(PROFILE, 1, WarmPoolMode.ALLOCATED);
+
+        waitUntil(() -> releasedMachines.contains(MATCHING_MACHINE));
+        assertEquals(0, warmPool.getAvailable(PROFILE));
+    }
+
+    /**
+     * Deploy by resources, expecting the deployment to fail long before its timeout.
+     */
+    private MachineDeploymentException getFailure(String systemId) throws Exception {
+        try {
+            pollingService.deployMachineByResources(2, 1024, null, TAGS, Duration.ofMinutes(5))
+                          .get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof MachineDeploymentException);
+            MachineDeploymentException failure = (MachineDeploymentException) e.getCause();
+            assertEquals(systemId, failure.getSystemId());
+            return failure;
+        }
+        fail("The deployment should have failed");
+        return null;
+    }
+
+    private String allocate(String systemId) {
+        statuses.put(systemId, allocationStatus);
+        return machine(systemId);
+    }
+
+    private String deploy(String systemId) {
+        deployedMachines.add(systemId);
+        statuses.put(systemId, MachineStatus.DEPLOYING);
+        return machine(systemId);
+    }
+
+    private String release(String systemId) {
+        releasedMachines.add(systemId);
+        statuses.put(systemId, MachineStatus.READY);
+        return machine(systemId);
+    }
+
+    private String summaries(Stream<String> systemIds) {
+        return systemIds.filter(statuses::containsKey).map(systemId -> {
+            MachineStatus status = statuses.get(systemId);
+            if (status == MachineStatus.DEPLOYING && deploymentOutcomes.containsKey(systemId)) {
+                // Seen deploying once, then reaching its outcome
+                statuses.put(systemId, deploymentOutcomes.get(systemId));
+            }
+            return machine(systemId, status);
+        }).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private String machine(String systemId) {
+        return machine(systemId, statuses.get(systemId));
+    }
+
+    private static String machine(String systemId, MachineStatus status) {
+        return "{\"system_id\":\"" + systemId + "\",\"status\":" + status.getCode() + "}";
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition not met in time");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+
+/**
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class RequestCoalescerTest {
+
+    private static final int CALLERS = 32;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        AtomicInteger requests = new AtomicInteger();
+
+        coalescer.execute("key", requests::incrementAndGet);
+        coalescer.execute("key", requests::incrementAndGet);
+
+        assertFalse(coalescer.isEnabled());
+        assertEquals(2, requests.get());
+        assertEquals(0, coalescer.getHits());
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneRequest() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        coalescer.setEnabled(true);
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Object response = new Object();
+
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> coalescer.execute("key", () -> {
+                requests.incrementAndGet();
+                await(release);
+                return response;
+            })));
+        }
+        // Let every caller join the request in flight
+        waitFor(() -> coalescer.getHits() + requests.get() == CALLERS);
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            assertSame(response, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, requests.get());
+        assertEquals(CALLERS - 1, coalescer.getHits());
+        assertEquals(1, coalescer.getMisses());
+    }
+
+    @Test
+    public void testErrorIsPropagatedToJoinedCallers() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        coalescer.setEnabled(true);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger requests = new AtomicInteger();
+
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> coalescer.execute("key", () -> {
+                requests.incrementAndGet();
+                await(release);
+                throw new StackOverflowError("request failed");
+            })));
+        }
+        waitFor(() -> coalescer.getHits() + requests.get() == CALLERS);
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            try {
+                // Must not hang: joined callers are released with the same error
+                result.get(5, TimeUnit.SECONDS);
+                fail("The error must be propagated");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof StackOverflowError);
+            }
+        }
+    }
+
+    @Test
+    public void testRequestsAreNotRetained() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        coalescer.setEnabled(true);
+        AtomicInteger requests = new AtomicInteger();
+
+        coalescer.execute("key", requests::incrementAndGet);
+        coalescer.execute("key", requests::incrementAndGet);
+
+        assertEquals(2, requests.get());
+        assertEquals(0, coalescer.getHits());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
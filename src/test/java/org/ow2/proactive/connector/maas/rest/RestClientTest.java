@@ -0,0 +1,181 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.maas.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.proactive.connector.maas.FakeMaasServer;
+import org.ow2.proactive.connector.maas.data.Machine;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+
+/**
+ * Hammers a single client from many threads: responses must not be mixed up and requests must not leak
+ * their headers into each other.
+ *
+ * @author ActiveEon Team
+ * @since 17/10/26
+ */
+public class RestClientTest {
+
+    private static final int THREADS = 16;
+
+    private static final int REQUESTS_PER_THREAD = 50;
+
+    private static final String UPDATE_NODES = "/tags/{name}/?op=update_nodes";
+
+    private FakeMaasServer server;
+
+    private RestClient restClient;
+
+    private ExecutorService executor;
+
+    private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMaasServer();
+        server.respond("/machines/", (exchange, body) -> {
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null && contentType.startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)) {
+                errors.add("GET request sent with content type " + contentType);
+            }
+            String systemId = exchange.getRequestURI().getPath().replaceAll(".*/machines/([^/]+)/", "$1");
+            return "{\"system_id\": \"" + systemId + "\", \"hostname\": \"host-" + systemId + "\", \"status\": 6}";
+        });
+        server.respond("/tags/", (exchange, body) -> {
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType == null || !contentType.startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)) {
+                errors.add("POST request sent with content type " + contentType);
+            }
+            return "{}";
+        });
+        restClient = new RestClient(new RestTemplate(), server.getApiUrl());
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        server.close();
+    }
+
+    @Test
+    public void testConcurrentRequestsAreIsolated() throws Exception {
+        List<Future<?>> results = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int threadIndex = thread;
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    String systemId = "node" + threadIndex + "x" + i;
+                    if (i % 2 == 0) {
+                        HashMap<String, String> args = new HashMap<>();
+                        args.put("system_id", systemId);
+                        ResponseEntity<Machine> response = restClient.getRequestWithArgs(Machine.class,
+                                                                                         "/machines/{system_id}/",
+                                                                                         args);
+                        if (response.getStatusCode() != HttpStatus.OK ||
+                            !systemId.equals(response.getBody().getSystemId())) {
+                            errors.add("Wrong response for " + systemId + ": " + response);
+                        }
+                    } else {
+                        HashMap<String, String> args = new HashMap<>();
+                        args.put("name", "tag" + threadIndex);
+                        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+                        parts.add("add", systemId);
+                        ResponseEntity<String> response = restClient.postRequestWithArgs(String.class,
+                                                                                         UPDATE_NODES,
+                                                                                         parts,
+                                                                                         args);
+                        if (response.getStatusCode() != HttpStatus.OK) {
+                            errors.add("Wrong response for " + systemId + ": " + response);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(Collections.emptyList(), new ArrayList<>(errors));
+        // The shared headers are left untouched
+        assertNull(RequestHeaders.JSON.getContentType());
+        assertEquals(Collections.singletonList(MediaType.APPLICATION_JSON), RequestHeaders.JSON.getAccept());
+        assertEquals(MediaType.MULTIPART_FORM_DATA, RequestHeaders.MULTIPART.getContentType());
+    }
+
+    @Test
+    public void testCoalescedRequestsGetTheirOwnResponse() throws Exception {
+        restClient.getRequestCoalescer().setEnabled(true);
+
+        List<Future<?>> results = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    // Few distinct machines, so that identical requests overlap
+                    String systemId = "node" + (i % 4);
+                    HashMap<String, String> args = new HashMap<>();
+                    args.put("system_id", systemId);
+                    ResponseEntity<Machine> response = restClient.getRequestWithArgs(Machine.class,
+                                                                                     "/machines/{system_id}/",
+                                                                                     args);
+                    if (!systemId.equals(response.getBody().getSystemId())) {
+                        errors.add("Wrong response for " + systemId + ": " + response);
+                    }
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(Collections.emptyList(), new ArrayList<>(errors));
+        RequestCoalescer coalescer = restClient.getRequestCoalescer();
+        assertEquals(THREADS * REQUESTS_PER_THREAD, coalescer.getHits() + coalescer.getMisses());
+        assertTrue(coalescer.getMisses() > 0);
+    }
+}